@@ -0,0 +1,22 @@
+package com.folksdev.blog.concurrent;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a read whose concurrent calls with equal arguments may share one execution.
+ * A caller arriving while a load for the same arguments is in flight waits for it and
+ * gets its result, or its exception, instead of running the method again.
+ * <p>
+ * A caller can therefore receive a result that was being read while its own earlier
+ * write committed; only put this on reads that tolerate that.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesced {
+
+    /**
+     * Name of the load, used to tag its metrics.
+     */
+    String value();
+}
@@ -0,0 +1,77 @@
+package com.folksdev.blog.concurrent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single-flight for {@link Coalesced} methods. Runs outside any transaction of the
+ * method, so a waiting caller holds no connection.
+ * <p>
+ * Counts executions as {@code blog.coalescing.loads} and callers that got the result
+ * of another caller's execution as {@code blog.coalescing.coalesced}, both tagged
+ * with the name of the load.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CoalescingAspect {
+
+    private final ConcurrentMap<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public CoalescingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(com.folksdev.blog.concurrent.Coalesced)")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        Coalesced coalesced = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(Coalesced.class);
+        List<Object> key = new ArrayList<>();
+        key.add(coalesced.value());
+        key.addAll(Arrays.asList(joinPoint.getArgs()));
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            counter("blog.coalescing.coalesced", coalesced).increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+
+        counter("blog.coalescing.loads", coalesced).increment();
+        try {
+            Object result = joinPoint.proceed();
+            load.complete(result);
+            return result;
+        } catch (Throwable t) {
+            load.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    private Counter counter(String name, Coalesced coalesced) {
+        return Counter.builder(name)
+                .tag("load", coalesced.value())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,55 @@
+package com.folksdev.blog.config;
+
+import org.hibernate.QueryException;
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * Registers {@code bitand(a, b)} for JPQL so repositories can filter on the enum
+ * bitmask columns. PostgreSQL has no such function and gets the {@code &} operator,
+ * other databases (H2 in tests) use their native {@code BITAND}.
+ */
+public class BitwiseFunctionsContributor implements MetadataBuilderContributor {
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction("bitand", new BitAndFunction());
+    }
+
+    private static class BitAndFunction implements SQLFunction {
+
+        @Override
+        public boolean hasArguments() {
+            return true;
+        }
+
+        @Override
+        public boolean hasParenthesesIfNoArguments() {
+            return true;
+        }
+
+        @Override
+        public Type getReturnType(Type firstArgumentType, Mapping mapping) {
+            return IntegerType.INSTANCE;
+        }
+
+        @Override
+        public String render(Type firstArgumentType, List arguments, SessionFactoryImplementor factory) {
+            if (arguments.size() != 2) {
+                throw new QueryException("bitand() requires two arguments");
+            }
+            if (factory.getJdbcServices().getDialect() instanceof PostgreSQL81Dialect) {
+                return "(" + arguments.get(0) + " & " + arguments.get(1) + ")";
+            }
+            return "bitand(" + arguments.get(0) + ", " + arguments.get(1) + ")";
+        }
+    }
+}
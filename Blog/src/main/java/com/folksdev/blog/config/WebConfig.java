@@ -0,0 +1,37 @@
+package com.folksdev.blog.config;
+
+import com.folksdev.blog.web.VersionEtagInterceptor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final VersionEtagInterceptor versionEtagInterceptor;
+
+    public WebConfig(VersionEtagInterceptor versionEtagInterceptor) {
+        this.versionEtagInterceptor = versionEtagInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(versionEtagInterceptor);
+    }
+
+    /**
+     * Every other GET still gets a content hash ETag and a 304 on match. That
+     * saves the transfer but not the work; the filter keeps an ETag the
+     * interceptor already set.
+     */
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> shallowEtagHeaderFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+                new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/v1/*");
+        return registration;
+    }
+}
@@ -1,32 +1,71 @@
 package com.folksdev.blog.controller;
 
 import com.folksdev.blog.dto.BlogDto;
+import com.folksdev.blog.dto.BlogSummaryDto;
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.requests.CreateBlogRequest;
+import com.folksdev.blog.dto.requests.PatchBlogRequest;
 import com.folksdev.blog.service.BlogService;
+import com.folksdev.blog.service.SparseFieldService;
+import com.folksdev.blog.web.BlogDetailCache;
+import com.folksdev.blog.web.VersionedEtag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping(value = "v1/blog")
 public class BlogController {
 
     private final BlogService blogService;
+    private final BlogDetailCache blogDetailCache;
+    private final SparseFieldService sparseFieldService;
 
-    public BlogController(BlogService blogService) {
+    public BlogController(BlogService blogService, BlogDetailCache blogDetailCache,
+                          SparseFieldService sparseFieldService) {
         this.blogService = blogService;
+        this.blogDetailCache = blogDetailCache;
+        this.sparseFieldService = sparseFieldService;
     }
 
     @GetMapping
-    public ResponseEntity<List<BlogDto>> getBlogs(){
+    public ResponseEntity<List<BlogSummaryDto>> getBlogs(){
         return ResponseEntity.ok(blogService.getBlogs());
     }
 
+    /**
+     * Only the comma separated {@code fields} of each blog, read straight from the
+     * database.
+     */
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getBlogFields(@RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getBlogs(fields));
+    }
+
     @GetMapping(value = "/{blogId}")
-    public ResponseEntity<BlogDto> getBlogById(@PathVariable String blogId){
-        return ResponseEntity.ok(blogService.getBlogById(blogId));
+    @VersionedEtag(value = VersionedEtag.Resource.BLOG, pathVariable = "blogId")
+    public ResponseEntity<byte[]> getBlogById(@PathVariable String blogId){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(blogDetailCache.get(blogId).getJson());
+    }
+
+    /**
+     * Bypasses the detail cache, a few columns are cheaper to read than the cached
+     * aggregate is to rebuild.
+     */
+    @GetMapping(value = "/{blogId}", params = "fields")
+    @VersionedEtag(value = VersionedEtag.Resource.BLOG, pathVariable = "blogId")
+    public ResponseEntity<Map<String, Object>> getBlogFieldsById(@PathVariable String blogId,
+                                                                 @RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getBlogById(blogId, fields));
     }
 
     @PostMapping(value = "/{userId}")
@@ -41,8 +80,21 @@ public class BlogController {
         return ResponseEntity.ok(blogService.updateBlog(updateBlogRequest,blogId));
     }
 
+    /**
+     * Changes only the fields present in the request. Answers 412 when If-Match is sent
+     * and does not list the current version, and tags the response with the new one.
+     */
+    @PatchMapping(value = "/{blogId}")
+    public ResponseEntity<BlogDto> patchBlog(@PathVariable String blogId,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @RequestBody @Valid PatchBlogRequest patchBlogRequest){
+        Versioned<BlogDto> patched = blogService.patchBlog(blogId, patchBlogRequest, ifMatch);
+        return ResponseEntity.ok().eTag(patched.getEtag()).body(patched.getBody());
+    }
+
     @DeleteMapping(value = "/{blogId}")
-    public ResponseEntity<String> deleteBlog(@PathVariable String blogId){
-        return ResponseEntity.ok(blogService.deleteBlog(blogId));
+    public ResponseEntity<PurgeJobDto> deleteBlog(@PathVariable String blogId){
+        PurgeJobDto purge = blogService.deleteBlog(blogId);
+        return ResponseEntity.accepted().location(URI.create("/v1/purge/" + purge.getId())).body(purge);
     }
 }
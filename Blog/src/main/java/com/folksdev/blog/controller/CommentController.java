@@ -1,11 +1,24 @@
 package com.folksdev.blog.controller;
 
+import com.folksdev.blog.dto.AcceptedCommentDto;
 import com.folksdev.blog.dto.CommentDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.requests.CreateCommentRequest;
+import com.folksdev.blog.dto.requests.PatchCommentRequest;
 import com.folksdev.blog.service.CommentService;
+import com.folksdev.blog.service.ExportService;
+import com.folksdev.blog.web.CursorPageResponse;
+import com.folksdev.blog.web.NdjsonResponse;
+import com.folksdev.blog.web.VersionedEtag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.net.URI;
 import java.util.List;
 
 @RestController
@@ -13,15 +26,33 @@ import java.util.List;
 public class CommentController {
 
     private final CommentService commentService;
+    private final ExportService exportService;
 
-    public CommentController(CommentService commentService) {
+    public CommentController(CommentService commentService, ExportService exportService) {
         this.commentService = commentService;
+        this.exportService = exportService;
     }
 
 
+    /**
+     * Newest first, one page at a time like {@link PostController#getPosts}. Posts only
+     * carry a preview of their latest comments, this is where the rest is read.
+     */
     @GetMapping("/post/{postId}")
-    public ResponseEntity<List<CommentDto>> getCommentsByPostId(@PathVariable String postId){
-        return ResponseEntity.ok(commentService.getCommentsByPostId(postId));
+    @VersionedEtag(value = VersionedEtag.Resource.POST_COMMENTS, pathVariable = "postId")
+    public ResponseEntity<List<CommentDto>> getCommentsByPostId(@PathVariable String postId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "" + CommentService.DEFAULT_PAGE_SIZE) int size){
+        return CursorPageResponse.of(commentService.getCommentsByPostId(postId, cursor, size));
+    }
+
+    /**
+     * The comments of a post as newline-delimited JSON, see {@link PostController#exportPosts}.
+     */
+    @GetMapping(value = "/post/{postId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCommentsByPostId(@PathVariable String postId,
+                                                                        HttpServletRequest request){
+        return NdjsonResponse.of(exportService.exportCommentsByPostId(postId), request);
     }
 
     @GetMapping("/{id}")
@@ -36,12 +67,35 @@ public class CommentController {
         return ResponseEntity.ok(commentService.createComment(postId,userId,createCommentRequest));
     }
 
+    /**
+     * Same as {@link #createComment} for clients sending {@code Prefer: respond-async}:
+     * answers 202 before the comment is stored, or 429 while too many are waiting.
+     */
+    @PostMapping(value = "/{postId}/{userId}", headers = "Prefer=respond-async")
+    public ResponseEntity<AcceptedCommentDto> acceptComment(@PathVariable String postId,
+                                                            @PathVariable String userId,
+                                                            @RequestBody @Valid CreateCommentRequest createCommentRequest){
+        AcceptedCommentDto accepted = commentService.acceptComment(postId, userId, createCommentRequest);
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/comment/" + accepted.getId()))
+                .header("Preference-Applied", "respond-async")
+                .body(accepted);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<CommentDto> updateComment(@PathVariable String id,
                                                     @RequestBody CreateCommentRequest createCommentRequest){
         return ResponseEntity.ok(commentService.updateComment(id,createCommentRequest));
     }
 
+    @PatchMapping(value = "/{id}")
+    public ResponseEntity<CommentDto> patchComment(@PathVariable String id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody @Valid PatchCommentRequest patchCommentRequest){
+        Versioned<CommentDto> patched = commentService.patchComment(id, patchCommentRequest, ifMatch);
+        return ResponseEntity.ok().eTag(patched.getEtag()).body(patched.getBody());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteComment(@PathVariable String id){
         return ResponseEntity.ok(commentService.deleteComment(id));
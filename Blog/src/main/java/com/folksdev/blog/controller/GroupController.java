@@ -1,21 +1,28 @@
 package com.folksdev.blog.controller;
 
+import com.folksdev.blog.dto.requests.AddGroupMembersRequest;
 import com.folksdev.blog.dto.requests.CreateGroupRequest;
 import com.folksdev.blog.dto.GroupDto;
+import com.folksdev.blog.dto.GroupMembersAddedDto;
+import com.folksdev.blog.model.GroupsType;
 import com.folksdev.blog.service.GroupService;
+import com.folksdev.blog.service.SparseFieldService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping(value = "v1/group")
 public class GroupController {
 
     private final GroupService groupService;
-    public GroupController(GroupService groupService) {
+    private final SparseFieldService sparseFieldService;
+    public GroupController(GroupService groupService, SparseFieldService sparseFieldService) {
         this.groupService = groupService;
+        this.sparseFieldService = sparseFieldService;
     }
 
     @GetMapping
@@ -23,11 +30,33 @@ public class GroupController {
         return ResponseEntity.ok(groupService.getGroups());
     }
 
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getGroupFields(@RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getGroups(fields));
+    }
+
+    @GetMapping(value = "/type/{type}")
+    public ResponseEntity<List<GroupDto>> getGroupsByType(@PathVariable GroupsType type){
+        return ResponseEntity.ok(groupService.getGroupsByType(type));
+    }
+
+    @GetMapping(value = "/type/{type}", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getGroupFieldsByType(@PathVariable GroupsType type,
+                                                                          @RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getGroupsByType(type, fields));
+    }
+
     @GetMapping(value = "/{id}")
     public ResponseEntity<GroupDto> getGroupById(@PathVariable String id){
         return ResponseEntity.ok(groupService.getGroupById(id));
     }
 
+    @GetMapping(value = "/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getGroupFieldsById(@PathVariable String id,
+                                                                  @RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getGroupById(id, fields));
+    }
+
     @PostMapping
     public ResponseEntity<GroupDto> createGroup(@RequestBody @Valid CreateGroupRequest createGroupRequest){
         return ResponseEntity.ok(groupService.createGroup((createGroupRequest)));
@@ -38,6 +67,24 @@ public class GroupController {
         return ResponseEntity.ok(groupService.updateGroup(id,createGroupRequest));
     }
 
+    @PutMapping(value = "/{groupId}/members/{userId}")
+    public ResponseEntity<Void> addMember(@PathVariable String groupId, @PathVariable String userId){
+        groupService.addMember(groupId, userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping(value = "/{groupId}/members")
+    public ResponseEntity<GroupMembersAddedDto> addMembers(@PathVariable String groupId,
+                                                           @RequestBody @Valid AddGroupMembersRequest addGroupMembersRequest){
+        return ResponseEntity.ok(groupService.addMembers(groupId, addGroupMembersRequest.getUserIds()));
+    }
+
+    @DeleteMapping(value = "/{groupId}/members/{userId}")
+    public ResponseEntity<Void> removeMember(@PathVariable String groupId, @PathVariable String userId){
+        groupService.removeMember(groupId, userId);
+        return ResponseEntity.noContent().build();
+    }
+
     @DeleteMapping(value = "/{id}")
     public ResponseEntity<String> deleteUser(@PathVariable String id){
         return ResponseEntity.ok(groupService.deleteGroup(id));
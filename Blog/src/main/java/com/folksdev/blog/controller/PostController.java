@@ -1,37 +1,115 @@
 package com.folksdev.blog.controller;
 
+import com.folksdev.blog.dto.ImportResultDto;
 import com.folksdev.blog.dto.PostDto;
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.requests.CreatePostRequest;
+import com.folksdev.blog.dto.requests.PatchPostRequest;
+import com.folksdev.blog.model.TopicsType;
+import com.folksdev.blog.service.ExportService;
+import com.folksdev.blog.service.PostImportService;
 import com.folksdev.blog.service.PostService;
+import com.folksdev.blog.service.SparseFieldService;
+import com.folksdev.blog.web.CursorPageResponse;
+import com.folksdev.blog.web.NdjsonResponse;
+import com.folksdev.blog.web.VersionedEtag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping(value = "v1/post")
 public class PostController {
 
     private final PostService postService;
+    private final PostImportService postImportService;
+    private final ExportService exportService;
+    private final SparseFieldService sparseFieldService;
 
-    public PostController(PostService postService) {
+    public PostController(PostService postService, PostImportService postImportService, ExportService exportService,
+                          SparseFieldService sparseFieldService) {
         this.postService = postService;
+        this.postImportService = postImportService;
+        this.exportService = exportService;
+        this.sparseFieldService = sparseFieldService;
     }
 
     @GetMapping
-    public ResponseEntity<List<PostDto>> getPosts() {
-        return ResponseEntity.ok(postService.getPosts());
+    public ResponseEntity<List<PostDto>> getPosts(@RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "" + PostService.DEFAULT_PAGE_SIZE) int size) {
+        return CursorPageResponse.of(postService.getPosts(cursor, size));
+    }
+
+    /**
+     * Only the comma separated {@code fields} of each post, e.g. {@code ?fields=title,date},
+     * and only those columns are read.
+     */
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getPostFields(@RequestParam String fields,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "" + PostService.DEFAULT_PAGE_SIZE) int size) {
+        return CursorPageResponse.of(sparseFieldService.getPosts(fields, cursor, size));
+    }
+
+    /**
+     * All posts as newline-delimited JSON, one post per line, gzipped on request.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPosts(HttpServletRequest request) {
+        return NdjsonResponse.of(exportService.exportPosts(), request);
     }
 
     @GetMapping("/{postId}")
+    @VersionedEtag(value = VersionedEtag.Resource.POST, pathVariable = "postId")
     public ResponseEntity<PostDto> getPostById(@PathVariable String postId) {
         return ResponseEntity.ok(postService.getPostById(postId));
     }
 
+    @GetMapping(value = "/{postId}", params = "fields")
+    @VersionedEtag(value = VersionedEtag.Resource.POST, pathVariable = "postId")
+    public ResponseEntity<Map<String, Object>> getPostFieldsById(@PathVariable String postId,
+                                                                 @RequestParam String fields) {
+        return ResponseEntity.ok(sparseFieldService.getPostById(postId, fields));
+    }
+
     @GetMapping("/blog/{blogId}")
-    public ResponseEntity<List<PostDto>> getPostsByBlogId(@PathVariable String blogId) {
-        return ResponseEntity.ok(postService.getPostsByBlogId(blogId));
+    public ResponseEntity<List<PostDto>> getPostsByBlogId(@PathVariable String blogId,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "" + PostService.DEFAULT_PAGE_SIZE) int size) {
+        return CursorPageResponse.of(postService.getPostsByBlogId(blogId, cursor, size));
+    }
+
+    @GetMapping(value = "/blog/{blogId}", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getPostFieldsByBlogId(@PathVariable String blogId,
+                                                                           @RequestParam String fields,
+                                                                           @RequestParam(required = false) String cursor,
+                                                                           @RequestParam(defaultValue = "" + PostService.DEFAULT_PAGE_SIZE) int size) {
+        return CursorPageResponse.of(sparseFieldService.getPostsByBlogId(blogId, fields, cursor, size));
+    }
+
+    @GetMapping("/topic/{topic}")
+    public ResponseEntity<List<PostDto>> getPostsByTopic(@PathVariable TopicsType topic,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "" + PostService.DEFAULT_PAGE_SIZE) int size) {
+        return CursorPageResponse.of(postService.getPostsByTopic(topic, cursor, size));
+    }
+
+    @GetMapping(value = "/topic/{topic}", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getPostFieldsByTopic(@PathVariable TopicsType topic,
+                                                                          @RequestParam String fields,
+                                                                          @RequestParam(required = false) String cursor,
+                                                                          @RequestParam(defaultValue = "" + PostService.DEFAULT_PAGE_SIZE) int size) {
+        return CursorPageResponse.of(sparseFieldService.getPostsByTopic(topic, fields, cursor, size));
     }
 
     @PostMapping("/{blogId}")
@@ -40,14 +118,37 @@ public class PostController {
         return ResponseEntity.ok(postService.createPostByBlogId(blogId, createPostRequest));
     }
 
+    /**
+     * Takes a JSON array of {@link CreatePostRequest}s, read as it arrives rather
+     * than bound as a whole.
+     */
+    @PostMapping(value = "/{blogId}/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ImportResultDto>> importPosts(@PathVariable String blogId,
+                                                             HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(postImportService.importPosts(blogId, request.getInputStream()));
+    }
+
     @PutMapping("/{postId}")
     public ResponseEntity<PostDto> updatePostById(@PathVariable String postId,
                                                   @RequestBody @Valid CreatePostRequest createPostRequest) {
         return ResponseEntity.ok(postService.updatePostById(postId, createPostRequest));
     }
 
+    /**
+     * Partial update, see {@link BlogController#patchBlog}. If-Match takes the ETag of the
+     * post detail, and the response carries the one the detail has after the change.
+     */
+    @PatchMapping(value = "/{postId}")
+    public ResponseEntity<PostDto> patchPostById(@PathVariable String postId,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 @RequestBody @Valid PatchPostRequest patchPostRequest) {
+        Versioned<PostDto> patched = postService.patchPostById(postId, patchPostRequest, ifMatch);
+        return ResponseEntity.ok().eTag(patched.getEtag()).body(patched.getBody());
+    }
+
     @DeleteMapping("/{postId}")
-    public ResponseEntity<String> deletePost(@PathVariable String postId) {
-        return ResponseEntity.ok(postService.deletePost(postId));
+    public ResponseEntity<PurgeJobDto> deletePost(@PathVariable String postId) {
+        PurgeJobDto purge = postService.deletePost(postId);
+        return ResponseEntity.accepted().location(URI.create("/v1/purge/" + purge.getId())).body(purge);
     }
 }
@@ -0,0 +1,28 @@
+package com.folksdev.blog.controller;
+
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.service.PurgeService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Progress of the purges started by deleting a user, blog or post.
+ */
+@RestController
+@RequestMapping(value = "v1/purge")
+public class PurgeController {
+
+    private final PurgeService purgeService;
+
+    public PurgeController(PurgeService purgeService) {
+        this.purgeService = purgeService;
+    }
+
+    @GetMapping(value = "/{id}")
+    public ResponseEntity<PurgeJobDto> getPurgeJobById(@PathVariable String id) {
+        return ResponseEntity.ok(purgeService.getPurgeJobById(id));
+    }
+}
@@ -1,22 +1,38 @@
 package com.folksdev.blog.controller;
 
+import com.folksdev.blog.dto.PurgeJobDto;
 import com.folksdev.blog.dto.UserDto;
+import com.folksdev.blog.dto.UserImportResultDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.requests.CreateUserRequest;
+import com.folksdev.blog.dto.requests.PatchUserRequest;
 import com.folksdev.blog.dto.requests.UpdateUserRequest;
+import com.folksdev.blog.service.SparseFieldService;
+import com.folksdev.blog.service.UserImportService;
 import com.folksdev.blog.service.UserService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping(value = "v1/user")
 public class UserController {
 
     private final UserService userService;
-    public UserController(UserService userService){
+    private final UserImportService userImportService;
+    private final SparseFieldService sparseFieldService;
+    public UserController(UserService userService, UserImportService userImportService,
+                          SparseFieldService sparseFieldService){
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.sparseFieldService = sparseFieldService;
     }
 
     @GetMapping
@@ -24,29 +40,58 @@ public class UserController {
         return ResponseEntity.ok(userService.getUsers());
     }
 
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getUserFields(@RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getUsers(fields));
+    }
+
     @GetMapping(value = "/{id}")
     public ResponseEntity<UserDto> getUserById(@PathVariable String id){
         return ResponseEntity.ok(userService.getUserById(id));
     }
 
+    @GetMapping(value = "/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getUserFieldsById(@PathVariable String id,
+                                                                 @RequestParam String fields){
+        return ResponseEntity.ok(sparseFieldService.getUserById(id, fields));
+    }
+
     @PostMapping
     public ResponseEntity<UserDto> createUser(@RequestBody @Valid CreateUserRequest createUserRequest){
         return ResponseEntity.ok(userService.createUser((createUserRequest)));
     }
 
+    /**
+     * Takes a CSV with a header row naming the fields of {@link CreateUserRequest},
+     * read as it arrives.
+     */
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public ResponseEntity<UserImportResultDto> importUsers(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(userImportService.importUsers(request.getReader()));
+    }
+
     @PutMapping(value = "/{id}")
     public ResponseEntity<UserDto> updateUser(@PathVariable String id,
                                               @RequestBody @Valid UpdateUserRequest updateUserRequest){
         return ResponseEntity.ok(userService.updateUser(id,updateUserRequest));
     }
 
+    @PatchMapping(value = "/{id}")
+    public ResponseEntity<UserDto> patchUser(@PathVariable String id,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @RequestBody @Valid PatchUserRequest patchUserRequest){
+        Versioned<UserDto> patched = userService.patchUser(id, patchUserRequest, ifMatch);
+        return ResponseEntity.ok().eTag(patched.getEtag()).body(patched.getBody());
+    }
+
     @PutMapping(value = "/{userId}/{groupId}")
     public ResponseEntity<UserDto> updateUserAddGroup(@PathVariable String userId,@PathVariable String groupId){
         return ResponseEntity.ok(userService.updateUserAddGroup(userId,groupId));
     }
 
     @DeleteMapping(value = "/{id}")
-    public ResponseEntity<String> deleteUser(@PathVariable String id){
-        return ResponseEntity.ok(userService.deleteUser(id));
+    public ResponseEntity<PurgeJobDto> deleteUser(@PathVariable String id){
+        PurgeJobDto purge = userService.deleteUser(id);
+        return ResponseEntity.accepted().location(URI.create("/v1/purge/" + purge.getId())).body(purge);
     }
 }
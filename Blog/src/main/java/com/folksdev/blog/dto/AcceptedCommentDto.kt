@@ -0,0 +1,10 @@
+package com.folksdev.blog.dto
+
+/**
+ * Answer to a comment taken for writing later, [id] being the one it will be stored under.
+ */
+data class AcceptedCommentDto(
+    val id: String,
+    val body: String,
+    val date: String
+)
@@ -1,5 +1,6 @@
 package com.folksdev.blog.dto
 
+import com.fasterxml.jackson.annotation.JsonIgnore
 import com.fasterxml.jackson.annotation.JsonInclude
 import java.time.LocalDate
 import kotlin.collections.ArrayList
@@ -13,5 +14,7 @@ data class BlogDto @JvmOverloads constructor(
     @JsonInclude(JsonInclude.Include.NON_NULL)
     val user: UserDto? = null,
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
-    val posts: List<PostDto>? = ArrayList()
+    val posts: List<PostDto>? = ArrayList(),
+    @get:JsonIgnore
+    val version: Long? = null
     )
\ No newline at end of file
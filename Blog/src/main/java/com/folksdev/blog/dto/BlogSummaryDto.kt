@@ -0,0 +1,11 @@
+package com.folksdev.blog.dto
+
+import java.time.LocalDate
+
+data class BlogSummaryDto(
+    val title: String,
+    val description: String,
+    val date: LocalDate,
+    val username: String,
+    val postCount: Long
+)
@@ -1,6 +1,9 @@
 package com.folksdev.blog.dto
 
+import com.fasterxml.jackson.annotation.JsonIgnore
 import com.fasterxml.jackson.annotation.JsonInclude
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
 
 data class CommentDto @JvmOverloads constructor(
     val body: String,
@@ -9,4 +12,20 @@ data class CommentDto @JvmOverloads constructor(
     val postTitle: String? = "",
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     val username: String? = "",
-)
+    // the keyset of the row, for the cursor of the next page
+    @get:JsonIgnore
+    val id: String? = null,
+    @get:JsonIgnore
+    val createdAt: LocalDateTime? = null,
+) {
+    // used by JPQL constructor expressions that select comment rows directly
+    constructor(body: String, date: LocalDateTime, postTitle: String?, username: String?) :
+            this(body, date.format(DATE_FORMAT), postTitle, username)
+
+    constructor(id: String, body: String, date: LocalDateTime, postTitle: String?, username: String?) :
+            this(body, date.format(DATE_FORMAT), postTitle, username, id, date)
+
+    companion object {
+        private val DATE_FORMAT: DateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+    }
+}
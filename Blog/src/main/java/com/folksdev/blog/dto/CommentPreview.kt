@@ -0,0 +1,14 @@
+package com.folksdev.blog.dto
+
+/**
+ * The latest comments of a post, newest first, and how many it has in all.
+ */
+data class CommentPreview(
+    val latest: List<CommentDto>,
+    val total: Long
+) {
+    companion object {
+        @JvmField
+        val NONE = CommentPreview(emptyList(), 0)
+    }
+}
@@ -0,0 +1,6 @@
+package com.folksdev.blog.dto
+
+data class CursorPageDto<T>(
+    val items: List<T>,
+    val nextCursor: String? = null
+)
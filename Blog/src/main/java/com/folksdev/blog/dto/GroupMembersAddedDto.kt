@@ -0,0 +1,8 @@
+package com.folksdev.blog.dto
+
+/**
+ * [added] leaves out users that were members already or do not exist.
+ */
+data class GroupMembersAddedDto(
+    val added: Int
+)
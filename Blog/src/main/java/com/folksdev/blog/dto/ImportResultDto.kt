@@ -0,0 +1,25 @@
+package com.folksdev.blog.dto
+
+import com.fasterxml.jackson.annotation.JsonInclude
+
+/**
+ * Outcome of one item of a bulk import, [index] being its zero based position in the upload.
+ */
+data class ImportResultDto @JvmOverloads constructor(
+    val index: Int,
+    val status: ImportStatus,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val id: String? = null,
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    val errors: Map<String, String> = emptyMap()
+)
+
+enum class ImportStatus {
+    CREATED,
+    /** Rejected before reaching the database. */
+    INVALID,
+    /** Valid, but the database refused the chunk it was part of. */
+    FAILED,
+    /** Valid, but a unique value is already stored or was claimed by an earlier item of the upload. */
+    CONFLICT
+}
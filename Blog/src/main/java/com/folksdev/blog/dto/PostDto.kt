@@ -2,6 +2,7 @@ package com.folksdev.blog.dto
 
 import com.fasterxml.jackson.annotation.JsonInclude
 import com.folksdev.blog.model.TopicsType
+import java.time.LocalDateTime
 
 data class PostDto @JvmOverloads constructor(
 
@@ -14,5 +15,10 @@ data class PostDto @JvmOverloads constructor(
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     val blogTitle: String? = "",
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
-    val userName: String? = ""
+    val userName: String? = "",
+    // comments holds only the latest few of them
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val commentCount: Long? = null,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val date: LocalDateTime? = null
     )
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.folksdev.blog.dto
+
+import com.fasterxml.jackson.annotation.JsonInclude
+import com.folksdev.blog.model.PurgeStatus
+import com.folksdev.blog.model.PurgeTarget
+import java.time.LocalDateTime
+
+data class PurgeJobDto @JvmOverloads constructor(
+    val id: String,
+    val targetType: PurgeTarget,
+    val targetId: String,
+    val status: PurgeStatus,
+    val deletedRows: Long,
+    val createdAt: LocalDateTime,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val finishedAt: LocalDateTime? = null
+)
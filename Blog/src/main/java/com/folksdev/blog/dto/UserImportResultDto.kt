@@ -0,0 +1,10 @@
+package com.folksdev.blog.dto
+
+/**
+ * Summary of a bulk user import. Only the rows that were left out are listed, an
+ * upload of a few hundred thousand users would otherwise answer with as many items.
+ */
+data class UserImportResultDto(
+    val imported: Int,
+    val rejected: List<ImportResultDto>
+)
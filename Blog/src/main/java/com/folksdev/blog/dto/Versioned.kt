@@ -0,0 +1,10 @@
+package com.folksdev.blog.dto
+
+/**
+ * A response [body] together with the [etag] a GET of the same resource would send now,
+ * unquoted, for controllers to send as the ETag.
+ */
+data class Versioned<T>(
+    val body: T,
+    val etag: String
+)
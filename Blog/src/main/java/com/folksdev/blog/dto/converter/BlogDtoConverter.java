@@ -1,32 +1,35 @@
 package com.folksdev.blog.dto.converter;
 
 import com.folksdev.blog.dto.BlogDto;
-import com.folksdev.blog.dto.CommentDto;
+import com.folksdev.blog.dto.CommentPreview;
 import com.folksdev.blog.dto.PostDto;
 import com.folksdev.blog.dto.UserDto;
 import com.folksdev.blog.model.Blog;
-import com.folksdev.blog.model.Comment;
 import com.folksdev.blog.model.Post;
 import com.folksdev.blog.model.User;
 import org.springframework.stereotype.Component;
 
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Component
 public class BlogDtoConverter {
 
 
-    public BlogDto convert(Blog from){
+    /**
+     * @param comments the comment preview of each post of the blog
+     */
+    public BlogDto convert(Blog from, Map<String, CommentPreview> comments){
         return new BlogDto(
                 from.getTitle(),
                 from.getDescription(),
                 from.getContent(),
                 from.getDate(),
                 getUser(from.getUser()),
-                getPostsList(new ArrayList<>(from.getPosts()))
+                getPostsList(new ArrayList<>(from.getPosts()), comments),
+                from.getVersion()
                 );
     }
     private UserDto getUser(User user) {
@@ -38,23 +41,19 @@ public class BlogDtoConverter {
         );
     }
 
-    private List<PostDto> getPostsList(List<Post> postsList) {
+    private List<PostDto> getPostsList(List<Post> postsList, Map<String, CommentPreview> comments) {
         return postsList.stream()
-                .map(g -> new PostDto(
-                        g.getTitle(),
-                        g.getContent(),
-                        g.getTopicsTypes(),
-                        getCommentsList(new ArrayList<>(g.getComments()))
-                )).collect(Collectors.toList());
-    }
-
-    private List<CommentDto> getCommentsList(List<Comment> commentsList) {
-        return commentsList.stream()
-                .map(c -> new CommentDto(
-                        c.getBody(),
-                        c.getDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
-                        "",
-                        c.getUser().getUsername()
-                )).collect(Collectors.toList());
+                .map(g -> {
+                    CommentPreview preview = comments.getOrDefault(g.getId(), CommentPreview.NONE);
+                    return new PostDto(
+                            g.getTitle(),
+                            g.getContent(),
+                            g.getTopicsTypes(),
+                            preview.getLatest(),
+                            "",
+                            "",
+                            preview.getTotal()
+                    );
+                }).collect(Collectors.toList());
     }
 }
@@ -0,0 +1,23 @@
+package com.folksdev.blog.dto.converter;
+
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.model.PurgeJob;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+@Component
+public class PurgeJobDtoConverter {
+
+    public PurgeJobDto convert(PurgeJob from) {
+        return new PurgeJobDto(
+                Objects.requireNonNull(from.getId()),
+                from.getTargetType(),
+                from.getTargetId(),
+                from.getStatus(),
+                from.getDeletedRows(),
+                from.getCreatedAt(),
+                from.getFinishedAt()
+        );
+    }
+}
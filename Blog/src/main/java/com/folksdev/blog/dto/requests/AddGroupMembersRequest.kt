@@ -0,0 +1,11 @@
+package com.folksdev.blog.dto.requests
+
+import javax.validation.constraints.NotEmpty
+import javax.validation.constraints.Size
+
+data class AddGroupMembersRequest(
+    // bound as one parameter each, PostgreSQL takes at most 32767 per statement
+    @field:NotEmpty
+    @field:Size(max = 10000)
+    val userIds: List<String>
+)
@@ -0,0 +1,5 @@
+package com.folksdev.blog.dto.requests
+
+/** Unlike @NotBlank this lets null through, which stands for "unchanged" in patch requests. */
+const val NOT_BLANK = "(?s).*\\S.*"
+const val NOT_BLANK_MESSAGE = "must not be blank"
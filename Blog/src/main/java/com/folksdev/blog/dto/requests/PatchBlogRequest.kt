@@ -0,0 +1,15 @@
+package com.folksdev.blog.dto.requests
+
+import javax.validation.constraints.Pattern
+
+/**
+ * Partial update of a blog, null fields are left as they are.
+ */
+data class PatchBlogRequest(
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val title: String? = null,
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val description: String? = null,
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val content: String? = null
+)
@@ -0,0 +1,11 @@
+package com.folksdev.blog.dto.requests
+
+import javax.validation.constraints.Pattern
+
+/**
+ * Partial update of a comment, null fields are left as they are.
+ */
+data class PatchCommentRequest(
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val body: String? = null
+)
@@ -0,0 +1,15 @@
+package com.folksdev.blog.dto.requests
+
+import com.folksdev.blog.model.TopicsType
+import javax.validation.constraints.Pattern
+
+/**
+ * Partial update of a post, null fields are left as they are.
+ */
+data class PatchPostRequest(
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val title: String? = null,
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val content: String? = null,
+    val topicsTypes: List<TopicsType>? = null
+)
@@ -0,0 +1,23 @@
+package com.folksdev.blog.dto.requests
+
+import com.folksdev.blog.model.Gender
+import javax.validation.constraints.Email
+import javax.validation.constraints.Pattern
+
+/**
+ * Partial update of a user, null fields are left as they are.
+ */
+data class PatchUserRequest(
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val name: String? = null,
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val surname: String? = null,
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val username: String? = null,
+    @field:Email
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val email: String? = null,
+    @field:Pattern(regexp = NOT_BLANK, message = NOT_BLANK_MESSAGE)
+    val dateOfBirth: String? = null,
+    val gender: Gender? = null
+)
@@ -0,0 +1,7 @@
+package com.folksdev.blog.event
+
+/**
+ * Published when anything shown on the detail view of the blog changes: the blog
+ * itself, one of its posts or a comment on one of them.
+ */
+data class BlogChangedEvent(val blogId: String)
@@ -0,0 +1,7 @@
+package com.folksdev.blog.event
+
+/**
+ * Published when a user is updated or deleted. Their details appear on their own blog
+ * and next to every comment they wrote, on any number of other blogs.
+ */
+data class UserChangedEvent(val userId: String)
@@ -0,0 +1,12 @@
+package com.folksdev.blog.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class CommentQueueFullException extends RuntimeException {
+
+    public CommentQueueFullException(String message) {
+        super(message);
+    }
+}
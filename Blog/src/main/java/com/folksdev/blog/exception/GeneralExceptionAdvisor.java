@@ -1,8 +1,10 @@
 package com.folksdev.blog.exception;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -76,4 +78,47 @@ public class GeneralExceptionAdvisor extends ResponseEntityExceptionHandler {
     public ResponseEntity<?> handle(CommentNotFoundException exception) {
         return new ResponseEntity<>(exception.getMessage(), HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler(CommentQueueFullException.class)
+    public ResponseEntity<?> handle(CommentQueueFullException exception) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(exception.getMessage());
+    }
+
+    //CONSTRAINT EXCEPTIONS
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<?> handle(DataIntegrityViolationException exception) {
+        RuntimeException translated = UniqueConstraintViolations.translate(exception).orElseThrow(() -> exception);
+        return new ResponseEntity<>(translated.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    //CONCURRENCY EXCEPTIONS
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<?> handle(ObjectOptimisticLockingFailureException exception) {
+        return new ResponseEntity<>("The resource was changed by another request, please retry.", HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<?> handle(PreconditionFailedException exception) {
+        return new ResponseEntity<>(exception.getMessage(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    //IMPORT EXCEPTIONS
+    @ExceptionHandler(InvalidImportException.class)
+    public ResponseEntity<?> handle(InvalidImportException exception) {
+        return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    //PAGINATION EXCEPTIONS
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<?> handle(InvalidCursorException exception) {
+        return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    //SPARSE FIELDSET EXCEPTIONS
+    @ExceptionHandler(InvalidFieldsException.class)
+    public ResponseEntity<?> handle(InvalidFieldsException exception) {
+        return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+    }
 }
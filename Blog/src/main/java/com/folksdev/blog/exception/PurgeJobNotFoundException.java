@@ -0,0 +1,12 @@
+package com.folksdev.blog.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class PurgeJobNotFoundException extends RuntimeException {
+
+    public PurgeJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,66 @@
+package com.folksdev.blog.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Maps a unique constraint the database refused a write for to the exception the
+ * services throw for the same conflict. Databases created by Hibernate before the
+ * schema was migrated by Flyway still carry its generated constraint names.
+ */
+final class UniqueConstraintViolations {
+
+    private static final Map<String, Supplier<RuntimeException>> BY_CONSTRAINT = new LinkedHashMap<>();
+
+    static {
+        Supplier<RuntimeException> user = () ->
+                new UserUniqueConstraintsViolatedException("Username and/or Email already exists!!");
+        Supplier<RuntimeException> blog = () ->
+                new BlogUniqueConstraintsViolatedException("A blog already exists for this user!!");
+        Supplier<RuntimeException> group = () ->
+                new GroupUniqueConstraintsViolatedException("This group name is already taken!");
+
+        BY_CONSTRAINT.put("uk_blog_user_username", user);
+        BY_CONSTRAINT.put("uk_blog_user_email", user);
+        BY_CONSTRAINT.put("uk_blog_user_id", blog);
+        BY_CONSTRAINT.put("uk_blog_group_name", group);
+
+        BY_CONSTRAINT.put("uk_i2windh8ml7wm23h4g1y7v3fg", user);
+        BY_CONSTRAINT.put("uk_r1953w9nwdiedp6e7e9w31ysl", user);
+        BY_CONSTRAINT.put("uk_3729xe1rgnhhpprfbn4si1skk", blog);
+        BY_CONSTRAINT.put("uk_m05ujwds3pb4d8qo91ixldo92", group);
+    }
+
+    private UniqueConstraintViolations() {
+    }
+
+    static Optional<RuntimeException> translate(DataIntegrityViolationException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return translate(((ConstraintViolationException) cause).getConstraintName());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Drivers report the name differently, H2 for one as the schema qualified name of
+     * the backing index, so the known names are looked for inside the reported one.
+     */
+    private static Optional<RuntimeException> translate(String constraintName) {
+        if (constraintName == null) {
+            return Optional.empty();
+        }
+        String reported = constraintName.toLowerCase(Locale.ROOT);
+        return BY_CONSTRAINT.entrySet().stream()
+                .filter(entry -> reported.contains(entry.getKey()))
+                .findFirst()
+                .map(entry -> entry.getValue().get());
+    }
+}
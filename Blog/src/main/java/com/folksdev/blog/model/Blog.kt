@@ -1,39 +1,59 @@
 package com.folksdev.blog.model
 
+import org.hibernate.Hibernate
+import org.hibernate.annotations.DynamicUpdate
 import org.hibernate.annotations.GenericGenerator
+import org.hibernate.annotations.LazyGroup
+import org.hibernate.annotations.OnDelete
+import org.hibernate.annotations.OnDeleteAction
+import org.hibernate.annotations.Where
 import java.time.LocalDate
+import java.time.LocalDateTime
 import javax.persistence.*
 
 @Entity
+@DynamicUpdate
+@Table(uniqueConstraints = [UniqueConstraint(name = "uk_blog_user_id", columnNames = ["user_id"])])
+// deleting the owner marks the blog as well
+@Where(clause = "deleted_at is null")
 data class Blog @JvmOverloads constructor(
     @Id
     @Column(name = "blog_id")
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    val id: String? = "",
-    val title: String,
-    val description: String,
-    val content: String,
-    val date: LocalDate = LocalDate.now(),
+    var id: String? = "",
+    var title: String,
+    var description: String,
+
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("content")
+    var content: String,
+
+    var date: LocalDate = LocalDate.now(),
 
     @OneToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id", referencedColumnName = "user_id", unique = true)
-    val user: User,
+    @JoinColumn(name = "user_id", referencedColumnName = "user_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    var user: User,
+
+    @OneToMany(mappedBy = "blog")
+    var posts: Set<@JvmSuppressWildcards Post> = emptySet(),
+
+    @Version
+    var version: Long? = null,
 
-    @OneToMany(mappedBy = "blog", cascade = [CascadeType.ALL])
-    val posts: Set<Post> = emptySet()
+    var deletedAt: LocalDateTime? = null
 
 ) {
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
-        if (javaClass != other?.javaClass) return false
+        if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) return false
 
         other as Blog
 
         if (id != other.id) return false
         if (title != other.title) return false
         if (description != other.description) return false
-        if (content != other.content) return false
         if (date != other.date) return false
         if (user != other.user) return false
         if (posts != other.posts) return false
@@ -45,7 +65,6 @@ data class Blog @JvmOverloads constructor(
         var result = id?.hashCode() ?: 0
         result = 31 * result + title.hashCode()
         result = 31 * result + description.hashCode()
-        result = 31 * result + content.hashCode()
         result = 31 * result + date.hashCode()
         result = 31 * result + user.id.hashCode()
         return result
@@ -1,31 +1,45 @@
 package com.folksdev.blog.model
 
+import org.hibernate.Hibernate
+import org.hibernate.annotations.DynamicUpdate
 import org.hibernate.annotations.GenericGenerator
+import org.hibernate.annotations.OnDelete
+import org.hibernate.annotations.OnDeleteAction
 import java.time.LocalDateTime
 import javax.persistence.*
 
 @Entity
+@DynamicUpdate
+// comments have no mark of their own, they disappear with their post, blog or author:
+// the queries join both and get their @Where, the collections below each filter the side
+// their owner doesn't cover, and a single comment is read with findVisibleById
 data class Comment @JvmOverloads constructor(
     @Id
     @Column(name = "comment_id")
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    val id: String? = "",
-    val body: String,
-    val date: LocalDateTime = LocalDateTime.now(),
+    var id: String? = "",
+    var body: String,
+    var date: LocalDateTime = LocalDateTime.now(),
 
+    // the schema deletes comments with their post or author, Hibernate never loads them for it
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id", referencedColumnName = "post_id")
-    val post: Post,
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    var post: Post,
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "user_id")
-    val user: User
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    var user: User,
+
+    @Version
+    var version: Long? = null
 
 ){
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
-        if (javaClass != other?.javaClass) return false
+        if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) return false
 
         other as Comment
 
@@ -0,0 +1,31 @@
+package com.folksdev.blog.model
+
+import java.util.EnumSet
+import javax.persistence.AttributeConverter
+import javax.persistence.Converter
+
+/**
+ * Stores a set of enum constants in a single integer column, bit n standing for the
+ * constant with ordinal n. New constants must only ever be appended to the enum,
+ * reordering them would reinterpret every stored mask.
+ */
+abstract class EnumBitmaskConverter<E : Enum<E>>(private val type: Class<E>) : AttributeConverter<List<E>, Int> {
+
+    init {
+        require(type.enumConstants.size < Int.SIZE_BITS) { "${type.simpleName} has too many constants for an int mask" }
+    }
+
+    override fun convertToDatabaseColumn(attribute: List<E>?): Int =
+        attribute.orEmpty().fold(0) { mask, value -> mask or (1 shl value.ordinal) }
+
+    override fun convertToEntityAttribute(dbData: Int?): List<E> {
+        val mask = dbData ?: 0
+        return type.enumConstants.filterTo(EnumSet.noneOf(type)) { mask and (1 shl it.ordinal) != 0 }.toList()
+    }
+}
+
+@Converter
+class TopicsTypeConverter : EnumBitmaskConverter<TopicsType>(TopicsType::class.java)
+
+@Converter
+class GroupsTypeConverter : EnumBitmaskConverter<GroupsType>(GroupsType::class.java)
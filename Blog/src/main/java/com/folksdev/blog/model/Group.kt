@@ -1,37 +1,58 @@
 package com.folksdev.blog.model
 
+import org.hibernate.Hibernate
+import org.hibernate.annotations.Cache
+import org.hibernate.annotations.CacheConcurrencyStrategy
+import org.hibernate.annotations.Fetch
+import org.hibernate.annotations.FetchMode
 import org.hibernate.annotations.GenericGenerator
+import org.hibernate.annotations.OnDelete
+import org.hibernate.annotations.OnDeleteAction
 import java.time.LocalDate
 import javax.persistence.*
 
 @Entity
-@Table(name = "blog_group")
+@Table(name = "blog_group", uniqueConstraints = [UniqueConstraint(name = "uk_blog_group_name", columnNames = ["name"])])
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "groups")
 data class Group @JvmOverloads constructor(
     @Id
     @Column(name = "group_id")
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    val id: String? = "",
-    @Column(unique = true)
-    val name: String,
-    val description: String,
-    val date: LocalDate = LocalDate.now(),
+    var id: String? = "",
+    var name: String,
+    var description: String,
+    var date: LocalDate = LocalDate.now(),
 
-    @field: ElementCollection(fetch = FetchType.EAGER)
-    val groupsTypes: List<GroupsType>,
+    @Convert(converter = GroupsTypeConverter::class)
+    @Column(name = "groups_types", nullable = false)
+    var groupsTypes: List<GroupsType>,
 
+    // subselect fetching initializes the members of every group returned by the
+    // owning query with one extra statement instead of one per group.
+    // Both foreign keys cascade as in V1_6, so the generated test schema also deletes
+    // the membership rows of a group or user whose members were never loaded
     @ManyToMany(fetch = FetchType.LAZY)
+    @Fetch(FetchMode.SUBSELECT)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinTable(
         name = "users_groups",
         joinColumns = [JoinColumn(name = "group_id", referencedColumnName = "group_id")],
-        inverseJoinColumns = [JoinColumn(name = "user_id", referencedColumnName = "user_id")]
+        inverseJoinColumns = [JoinColumn(name = "user_id", referencedColumnName = "user_id")],
+        foreignKey = ForeignKey(name = "fk_users_groups_group"),
+        inverseForeignKey = ForeignKey(name = "fk_users_groups_user",
+            foreignKeyDefinition = "foreign key (user_id) references blog_user (user_id) on delete cascade")
     )
-    val users: Set<User>? = HashSet()
+    var users: Set<@JvmSuppressWildcards User>? = HashSet(),
+
+    @Version
+    var version: Long? = null
 
 ) {
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
-        if (javaClass != other?.javaClass) return false
+        if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) return false
 
         other as Group
 
@@ -1,39 +1,62 @@
 package com.folksdev.blog.model
 
+import org.hibernate.Hibernate
+import org.hibernate.annotations.DynamicUpdate
 import org.hibernate.annotations.GenericGenerator
+import org.hibernate.annotations.LazyGroup
+import org.hibernate.annotations.OnDelete
+import org.hibernate.annotations.OnDeleteAction
+import org.hibernate.annotations.Where
 import java.time.LocalDateTime
 import javax.persistence.*
 
 @Entity
+@DynamicUpdate
+@Where(clause = "deleted_at is null " +
+        "and blog_id not in (select b.blog_id from blog b where b.deleted_at is not null)")
 data class Post @JvmOverloads constructor(
     @Id
     @Column(name = "post_id")
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    val id: String? = "",
-    val title: String,
-    val content: String,
-    val date: LocalDateTime = LocalDateTime.now(),
+    var id: String? = "",
+    var title: String,
 
-    @field: ElementCollection(fetch = FetchType.EAGER)
-    val topicsTypes: List<TopicsType>,
+    // left out when a post is only loaded to be referenced, the queries that show the
+    // post select it with fetch all properties
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("content")
+    var content: String,
 
-    @OneToMany(mappedBy = "post", cascade = [CascadeType.ALL])
-    val comments: Set<Comment> = emptySet(),
+    var date: LocalDateTime = LocalDateTime.now(),
+
+    @Convert(converter = TopicsTypeConverter::class)
+    @Column(name = "topics_types", nullable = false)
+    var topicsTypes: List<TopicsType>,
+
+    // the post itself is visible once it is loaded, only the authors are left to check
+    @OneToMany(mappedBy = "post")
+    @Where(clause = "not exists (select 1 from blog_user u where u.user_id = user_id and u.deleted_at is not null)")
+    var comments: Set<@JvmSuppressWildcards Comment> = emptySet(),
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "blog_id", referencedColumnName = "blog_id")
-    val blog: Blog
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    var blog: Blog,
+
+    @Version
+    var version: Long? = null,
+
+    var deletedAt: LocalDateTime? = null
 ) {
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
-        if (javaClass != other?.javaClass) return false
+        if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) return false
 
         other as Post
 
         if (id != other.id) return false
         if (title != other.title) return false
-        if (content != other.content) return false
         if (date != other.date) return false
         if (topicsTypes != other.topicsTypes) return false
         if (comments != other.comments) return false
@@ -45,7 +68,6 @@ data class Post @JvmOverloads constructor(
     override fun hashCode(): Int {
         var result = id?.hashCode() ?: 0
         result = 31 * result + title.hashCode()
-        result = 31 * result + content.hashCode()
         result = 31 * result + date.hashCode()
         result = 31 * result + topicsTypes.hashCode()
         result = 31 * result + blog.id.hashCode()
@@ -0,0 +1,57 @@
+package com.folksdev.blog.model
+
+import org.hibernate.Hibernate
+import org.hibernate.annotations.GenericGenerator
+import java.time.LocalDateTime
+import javax.persistence.*
+
+/**
+ * Removal of a deleted user, blog or post together with everything below it. [step]
+ * indexes the tables the purge goes through for [targetType] and [lastKey] is the key
+ * it stopped at in the current one, so an interrupted purge resumes where it was.
+ * [attempts] counts the batches that failed in a row since the last one that went through.
+ */
+@Entity
+@Table(name = "purge_job")
+data class PurgeJob @JvmOverloads constructor(
+    @Id
+    @Column(name = "job_id")
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    var id: String? = "",
+
+    @Enumerated(EnumType.STRING)
+    var targetType: PurgeTarget,
+    var targetId: String,
+
+    @Enumerated(EnumType.STRING)
+    var status: PurgeStatus = PurgeStatus.PENDING,
+    var step: Int = 0,
+    var lastKey: String = "",
+    var deletedRows: Long = 0,
+    var attempts: Int = 0,
+    var createdAt: LocalDateTime = LocalDateTime.now(),
+    var finishedAt: LocalDateTime? = null,
+
+    @Version
+    var version: Long? = null
+) {
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) return false
+
+        other as PurgeJob
+
+        return id != null && id == other.id
+    }
+
+    override fun hashCode(): Int = javaClass.hashCode()
+}
+
+enum class PurgeTarget {
+    USER, BLOG, POST
+}
+
+enum class PurgeStatus {
+    PENDING, RUNNING, DONE, FAILED
+}
@@ -1,46 +1,74 @@
 package com.folksdev.blog.model
 
+import com.folksdev.blog.service.UserUniquenessListener
+import org.hibernate.Hibernate
+import org.hibernate.annotations.Cache
+import org.hibernate.annotations.CacheConcurrencyStrategy
+import org.hibernate.annotations.DynamicUpdate
 import org.hibernate.annotations.GenericGenerator
+import org.hibernate.annotations.Where
 import java.time.LocalDate
+import java.time.LocalDateTime
 import javax.persistence.*
 
 
 @Entity
-@Table(name = "blog_user")
+@DynamicUpdate
+@Table(
+    name = "blog_user",
+    uniqueConstraints = [
+        UniqueConstraint(name = "uk_blog_user_username", columnNames = ["username"]),
+        UniqueConstraint(name = "uk_blog_user_email", columnNames = ["email"])
+    ]
+)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@EntityListeners(UserUniquenessListener::class)
+@Where(clause = "deleted_at is null")
 data class User @JvmOverloads constructor(
     @Id
     @Column(name = "user_id")
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
-    val id: String? = "",
-    val name: String,
-    val surname: String,
-    @Column(unique = true)
-    val username: String,
-    @Column(unique = true)
-    val email: String,
-    val dateOfBirth: LocalDate,
-    val gender: Gender,
+    var id: String? = "",
+    var name: String,
+    var surname: String,
+    var username: String,
+    var email: String,
+    var dateOfBirth: LocalDate,
+    var gender: Gender,
 
+    // the foreign keys of users_groups are declared once, on Group.users
     @ManyToMany(fetch = FetchType.LAZY )
     @JoinTable(
         name = "users_groups",
         joinColumns = [JoinColumn(name = "user_id", referencedColumnName = "user_id")],
-        inverseJoinColumns = [JoinColumn(name = "group_id", referencedColumnName = "group_id")]
+        inverseJoinColumns = [JoinColumn(name = "group_id", referencedColumnName = "group_id")],
+        foreignKey = ForeignKey(ConstraintMode.NO_CONSTRAINT),
+        inverseForeignKey = ForeignKey(ConstraintMode.NO_CONSTRAINT)
     )
-    val groups: Set<Group> = emptySet(),
+    var groups: Set<@JvmSuppressWildcards Group> = emptySet(),
 
-    @OneToOne(mappedBy = "user", cascade = [CascadeType.REMOVE])
-    val blog: Blog? = null,
+    @OneToOne(mappedBy = "user")
+    var blog: Blog? = null,
 
-    @OneToMany(mappedBy = "user", cascade = [CascadeType.ALL])
-    val comments: Set<Comment> = emptySet()
+    // the author is visible once loaded, the posts the comments were left on may not be
+    @OneToMany(mappedBy = "user")
+    @Where(clause = "not exists (select 1 from post p where p.post_id = post_id and (p.deleted_at is not null " +
+            "or p.blog_id in (select b.blog_id from blog b where b.deleted_at is not null)))")
+    var comments: Set<@JvmSuppressWildcards Comment> = emptySet(),
+
+    @Version
+    var version: Long? = null,
+
+    // set on delete, the row itself goes with the purge job
+    var deletedAt: LocalDateTime? = null
 
 ) {
 
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
-        if (javaClass != other?.javaClass) return false
+        if (other == null || Hibernate.getClass(this) != Hibernate.getClass(other)) return false
 
         other as User
 
@@ -1,10 +1,61 @@
 package com.folksdev.blog.repository;
 
+import com.folksdev.blog.dto.BlogSummaryDto;
 import com.folksdev.blog.model.Blog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
 
 public interface BlogRepository extends JpaRepository<Blog, String> {
 
     boolean existsByUserId(String userId);
 
+    @Query("select new com.folksdev.blog.dto.BlogSummaryDto(b.title, b.description, b.date, u.username, count(p.id)) " +
+            "from Blog b join b.user u left join b.posts p " +
+            "group by b.id, b.title, b.description, b.date, u.username " +
+            "order by b.date desc")
+    List<BlogSummaryDto> findAllSummaries();
+
+    /**
+     * The blog, its owner and its posts in one statement. The posts only show a
+     * preview of their comments, which is loaded separately for all of them.
+     * <p>
+     * {@code fetch all properties} also selects the lazy content of the blog and its
+     * posts, which would otherwise take one more statement per entity.
+     */
+    @Query("select distinct b from Blog b fetch all properties " +
+            "join fetch b.user " +
+            "left join fetch b.posts p fetch all properties " +
+            "where b.id = :id")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    Optional<Blog> findAggregateById(@Param("id") String id);
+
+    @Query("select b.version from Blog b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") String id);
+
+    /**
+     * The blog version is the version of the whole blog detail aggregate, so writes
+     * to its posts and comments and to the users shown in it have to bump it too.
+     */
+    @Modifying
+    @Query("update Blog b set b.version = b.version + 1 where b.id = :id")
+    int incrementVersion(@Param("id") String id);
+
+    @Modifying
+    @Query("update Blog b set b.version = b.version + 1 " +
+            "where b.id = (select p.blog.id from Post p where p.id = :postId)")
+    int incrementVersionByPostId(@Param("postId") String postId);
+
+    @Modifying
+    @Query("update Blog b set b.version = b.version + 1 " +
+            "where b.user.id = :userId " +
+            "or b.id in (select p.blog.id from Comment c join c.post p where c.user.id = :userId)")
+    int incrementVersionsShowingUser(@Param("userId") String userId);
+
 }
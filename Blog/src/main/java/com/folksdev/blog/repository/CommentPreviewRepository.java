@@ -0,0 +1,74 @@
+package com.folksdev.blog.repository;
+
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads the comment previews of a list of posts in one statement of the same text
+ * whatever the number of posts, so the database parses and plans it once.
+ * <p>
+ * On PostgreSQL each post id gets a {@code lateral} subquery that walks
+ * {@code ix_comment_post_id_date_comment_id} backwards and stops after {@code limit}
+ * rows, so the latest comments cost the same however long the thread is. The ids are
+ * bound as one comma separated value rather than an {@code in} list, which Hibernate
+ * would expand to one parameter per post. H2, which the tests run on, has no
+ * {@code lateral} and keeps a window query that numbers every comment of the posts.
+ * <p>
+ * The total is a count, on both databases, and visits one index entry per comment of
+ * each post: a post with ten thousand comments makes its listing read ten thousand
+ * entries, though no comment rows, since the index carries {@code user_id} for the
+ * deleted author check. A counter column on post would make it constant, but would
+ * have to follow the service, the write-behind queue, the purge and the soft delete of
+ * an author, which changes the count of every post they commented on.
+ */
+@Repository
+public class CommentPreviewRepository {
+
+    private static final String LATERAL = "select p.post_id, r.body, r.date, r.username, t.total " +
+            "from unnest(string_to_array(:postIds, ',')) as p(post_id) " +
+            "cross join lateral (select c.body, c.date, c.comment_id, u.username " +
+            "from comment c join blog_user u on u.user_id = c.user_id " +
+            "where c.post_id = p.post_id and u.deleted_at is null " +
+            "order by c.date desc, c.comment_id desc limit :limit) r " +
+            "cross join lateral (select count(*) as total from comment c " +
+            "where c.post_id = p.post_id " +
+            "and not exists (select 1 from blog_user u where u.user_id = c.user_id and u.deleted_at is not null)) t " +
+            "order by p.post_id, r.date desc, r.comment_id desc";
+
+    private static final String WINDOW = "select r.post_id, r.body, r.date, r.username, r.total from (" +
+            "select c.post_id, c.body, c.date, u.username, " +
+            "row_number() over (partition by c.post_id order by c.date desc, c.comment_id desc) as recency, " +
+            "count(*) over (partition by c.post_id) as total " +
+            "from comment c join blog_user u on u.user_id = c.user_id " +
+            "where c.post_id in (:postIds) and u.deleted_at is null) r " +
+            "where r.recency <= :limit " +
+            "order by r.post_id, r.recency";
+
+    private final EntityManager entityManager;
+    private final boolean lateral;
+
+    public CommentPreviewRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+        this.lateral = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+    }
+
+    /**
+     * Up to {@code limit} latest comments of each of the posts, newest first, each row
+     * as {@code post_id, body, date, username, total} where total counts all comments
+     * of that post. Posts without comments have no rows. The posts are visible ones,
+     * only their authors are checked.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findLatestByPostIds(Collection<String> postIds, int limit) {
+        return entityManager.createNativeQuery(lateral ? LATERAL : WINDOW)
+                .setParameter("postIds", lateral ? String.join(",", postIds) : postIds)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+}
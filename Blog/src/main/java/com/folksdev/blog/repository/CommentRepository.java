@@ -1,11 +1,52 @@
 package com.folksdev.blog.repository;
 
+import com.folksdev.blog.dto.CommentDto;
 import com.folksdev.blog.model.Comment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CommentRepository extends JpaRepository<Comment,String> {
 
     List<Comment> findAllByPostId(String postId);
+
+    /**
+     * The comment, unless its post, blog or author is deleted, which {@link #findById}
+     * doesn't check. The {@code @Where} of an entity is not applied to the joins of a
+     * query, so the queries below test {@code deletedAt} on the rows they join.
+     */
+    @Query("select c from Comment c join fetch c.post p join p.blog b join fetch c.user u " +
+            "where c.id = :id and p.deletedAt is null and b.deletedAt is null and u.deletedAt is null")
+    Optional<Comment> findVisibleById(@Param("id") String id);
+
+    @Query("select new com.folksdev.blog.dto.CommentDto(c.id, c.body, c.date, p.title, u.username) " +
+            "from Comment c join c.post p join p.blog b join c.user u " +
+            "where p.id = :postId and p.deletedAt is null and b.deletedAt is null and u.deletedAt is null " +
+            "order by c.date desc, c.id desc")
+    List<CommentDto> findFirstPageByPostId(@Param("postId") String postId, Pageable pageable);
+
+    @Query("select new com.folksdev.blog.dto.CommentDto(c.id, c.body, c.date, p.title, u.username) " +
+            "from Comment c join c.post p join p.blog b join c.user u " +
+            "where p.id = :postId and p.deletedAt is null and b.deletedAt is null and u.deletedAt is null " +
+            "and c.date <= :date and (c.date < :date or c.id < :id) " +
+            "order by c.date desc, c.id desc")
+    List<CommentDto> findPageByPostIdAfter(@Param("postId") String postId,
+                                           @Param("date") LocalDateTime date,
+                                           @Param("id") String id,
+                                           Pageable pageable);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = PostRepository.EXPORT_FETCH_SIZE))
+    @Query("select new com.folksdev.blog.dto.CommentDto(c.body, c.date, p.title, u.username) " +
+            "from Comment c join c.post p join c.user u " +
+            // the post was checked by the caller
+            "where p.id = :postId and u.deletedAt is null")
+    Stream<CommentDto> streamCommentDtosByPostId(@Param("postId") String postId);
 }
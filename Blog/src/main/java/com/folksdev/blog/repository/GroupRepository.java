@@ -2,9 +2,53 @@ package com.folksdev.blog.repository;
 
 import com.folksdev.blog.model.Group;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface GroupRepository extends JpaRepository<Group,String> {
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+
+public interface GroupRepository extends JpaRepository<Group,String>, GroupTypeQueries {
 
     boolean existsByName(String name);
 
+    /**
+     * Inserts the one users_groups row unless it is there, where saving an owning
+     * collection makes Hibernate rewrite all of them. The declared query space keeps
+     * this and the following native statements from evicting every second level cache
+     * region. Inserts nothing for an unknown user as well.
+     * <p>
+     * A row inserted concurrently by another transaction is skipped by the primary key
+     * conflict itself, so the statement never fails and never aborts the transaction
+     * of a caller such as {@code UserService.updateUserAddGroup}.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES, value = "users_groups"))
+    @Query(value = "insert into users_groups (user_id, group_id) select u.user_id, :groupId from blog_user u " +
+            "where u.user_id = :userId on conflict do nothing",
+            nativeQuery = true)
+    int addMember(@Param("userId") String userId, @Param("groupId") String groupId);
+
+    /**
+     * Ids of unknown users and of members are skipped.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES, value = "users_groups"))
+    @Query(value = "insert into users_groups (user_id, group_id) select u.user_id, :groupId from blog_user u " +
+            "where u.user_id in (:userIds) on conflict do nothing",
+            nativeQuery = true)
+    int addMembers(@Param("userIds") Collection<String> userIds, @Param("groupId") String groupId);
+
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES, value = "users_groups"))
+    @Query(value = "delete from users_groups where user_id = :userId and group_id = :groupId", nativeQuery = true)
+    int removeMember(@Param("userId") String userId, @Param("groupId") String groupId);
+
 }
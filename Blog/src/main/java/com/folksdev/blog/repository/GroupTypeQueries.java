@@ -0,0 +1,16 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.model.Group;
+
+import java.util.List;
+
+/**
+ * The type listing of {@link GroupRepository}, see {@link GroupTypeQueriesImpl}.
+ */
+public interface GroupTypeQueries {
+
+    /**
+     * @param mask the bit of a single group type
+     */
+    List<Group> findAllByTypesMask(int mask);
+}
@@ -0,0 +1,27 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.model.Group;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Writes the type's bit into the statement for the partial index of that type, as
+ * {@link PostTopicQueriesImpl} does for topics.
+ */
+public class GroupTypeQueriesImpl implements GroupTypeQueries {
+
+    private static final String BY_TYPE = "select g from Group g where bitand(g.groupsTypes, %d) <> 0";
+
+    private final EntityManager entityManager;
+
+    public GroupTypeQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Group> findAllByTypesMask(int mask) {
+        return entityManager.createQuery(String.format(BY_TYPE, PostTopicQueriesImpl.singleBit(mask)), Group.class)
+                .getResultList();
+    }
+}
@@ -1,11 +1,91 @@
 package com.folksdev.blog.repository;
 
 import com.folksdev.blog.model.Post;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface PostRepository extends JpaRepository<Post, String>, PostTopicQueries {
 
-public interface PostRepository extends JpaRepository<Post, String> {
+    /**
+     * Rows per round trip for the export streams. PostgreSQL only honours it inside a
+     * transaction, otherwise the driver reads the whole result at once.
+     */
+    String EXPORT_FETCH_SIZE = "500";
 
     List<Post> findAllByBlogId(String x);
+
+    @Query("select p.version from Post p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") String id);
+
+    @Query("select p.blog.id from Post p where p.id = :id")
+    Optional<String> findBlogIdById(@Param("id") String id);
+
+    /**
+     * The post detail also shows its blog's title and owner, so its version is
+     * combined with the version of the blog.
+     */
+    @Query("select concat(cast(p.version as string), '.', cast(b.version as string)) " +
+            "from Post p join p.blog b where p.id = :id")
+    Optional<String> findAggregateVersionById(@Param("id") String id);
+
+    @Modifying
+    @Query("update Post p set p.version = p.version + 1 where p.id = :id")
+    int incrementVersion(@Param("id") String id);
+
+    @Modifying
+    @Query("update Post p set p.version = p.version + 1 " +
+            "where p.id in (select c.post.id from Comment c where c.user.id = :userId)")
+    int incrementVersionsCommentedByUser(@Param("userId") String userId);
+
+    /**
+     * Every post with its content, blog and owner, for the export. Read only and kept out of the
+     * second level cache, so streaming the table leaves neither snapshots nor cache
+     * entries behind.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select p from Post p fetch all properties join fetch p.blog b join fetch b.user")
+    Stream<Post> streamAllWithBlogAndUser();
+
+    /**
+     * The post with its lazy content, for the post detail.
+     */
+    @Query("select p from Post p fetch all properties where p.id = :id")
+    Optional<Post> findWithContentById(@Param("id") String id);
+
+    /**
+     * The listings show the content of every post, so they fetch it along with the
+     * rest, as {@link #findWithContentById} does.
+     */
+    @Query("select p from Post p fetch all properties order by p.date desc, p.id desc")
+    List<Post> findFirstPage(Pageable pageable);
+
+    @Query("select p from Post p fetch all properties " +
+            "where p.date <= :date and (p.date < :date or p.id < :id) " +
+            "order by p.date desc, p.id desc")
+    List<Post> findPageAfter(@Param("date") LocalDateTime date, @Param("id") String id, Pageable pageable);
+
+    @Query("select p from Post p fetch all properties where p.blog.id = :blogId order by p.date desc, p.id desc")
+    List<Post> findFirstPageByBlogId(@Param("blogId") String blogId, Pageable pageable);
+
+    @Query("select p from Post p fetch all properties " +
+            "where p.blog.id = :blogId and p.date <= :date and (p.date < :date or p.id < :id) " +
+            "order by p.date desc, p.id desc")
+    List<Post> findPageByBlogIdAfter(@Param("blogId") String blogId,
+                                     @Param("date") LocalDateTime date,
+                                     @Param("id") String id,
+                                     Pageable pageable);
 }
@@ -0,0 +1,20 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.model.Post;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The topic listings of {@link PostRepository}, see {@link PostTopicQueriesImpl}.
+ */
+public interface PostTopicQueries {
+
+    /**
+     * @param mask the bit of a single topic
+     */
+    List<Post> findFirstPageByTopicsMask(int mask, Pageable pageable);
+
+    List<Post> findPageByTopicsMaskAfter(int mask, LocalDateTime date, String id, Pageable pageable);
+}
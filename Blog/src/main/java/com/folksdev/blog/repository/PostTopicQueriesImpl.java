@@ -0,0 +1,58 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.model.Post;
+import org.springframework.data.domain.Pageable;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes the topic's bit into the statement instead of binding it. PostgreSQL can then
+ * match the partial index of that topic (db/vendor/postgresql) in every plan, also the
+ * generic one the driver keeps once the statement is prepared on the server. That is one
+ * statement text per topic, each of them cached like any other.
+ */
+public class PostTopicQueriesImpl implements PostTopicQueries {
+
+    private static final String FIRST_PAGE = "select p from Post p fetch all properties " +
+            "where bitand(p.topicsTypes, %d) <> 0 order by p.date desc, p.id desc";
+    private static final String PAGE_AFTER = "select p from Post p fetch all properties " +
+            "where bitand(p.topicsTypes, %d) <> 0 and p.date <= :date and (p.date < :date or p.id < :id) " +
+            "order by p.date desc, p.id desc";
+
+    private final EntityManager entityManager;
+
+    public PostTopicQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Post> findFirstPageByTopicsMask(int mask, Pageable pageable) {
+        return page(entityManager.createQuery(String.format(FIRST_PAGE, singleBit(mask)), Post.class), pageable);
+    }
+
+    @Override
+    public List<Post> findPageByTopicsMaskAfter(int mask, LocalDateTime date, String id, Pageable pageable) {
+        return page(entityManager.createQuery(String.format(PAGE_AFTER, singleBit(mask)), Post.class)
+                .setParameter("date", date)
+                .setParameter("id", id), pageable);
+    }
+
+    private static List<Post> page(TypedQuery<Post> query, Pageable pageable) {
+        return query.setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    /**
+     * Only single bits have an index, and only a known number may go into the statement.
+     */
+    static int singleBit(int mask) {
+        if (Integer.bitCount(mask) != 1) {
+            throw new IllegalArgumentException("Expected a mask with a single bit, got " + mask);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,7 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.model.PurgeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PurgeJobRepository extends JpaRepository<PurgeJob, String> {
+}
@@ -0,0 +1,141 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Group;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.User;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reads resources as tuples of the fields a client picked with {@code ?fields=}, so the
+ * select list holds only those columns. Each element of a tuple is aliased with its
+ * field name.
+ */
+@Repository
+public class SparseFieldRepository {
+
+    public static final SparseFields<Post> POST = SparseFields.of(Post.class)
+            .column("title")
+            .column("content")
+            .column("date")
+            .column("topicsTypes")
+            .derived("comments")
+            .field("blogTitle", (root, query, cb) -> SparseFields.join(root, "blog").get("title"))
+            .field("userName", (root, query, cb) ->
+                    SparseFields.join(SparseFields.<Post, Blog>join(root, "blog"), "user").get("username"))
+            .derived("commentCount")
+            .build();
+
+    public static final SparseFields<Blog> BLOG = SparseFields.of(Blog.class)
+            .column("title")
+            .column("description")
+            .column("content")
+            .column("date")
+            .field("username", (root, query, cb) -> SparseFields.join(root, "user").get("username"))
+            .field("postCount", SparseFieldRepository::countPosts)
+            .build();
+
+    public static final SparseFields<User> USER = SparseFields.of(User.class)
+            .column("username")
+            .column("dateOfBirth")
+            .column("gender")
+            .column("email")
+            .build();
+
+    public static final SparseFields<Group> GROUP = SparseFields.of(Group.class)
+            .column("id")
+            .column("name")
+            .column("description")
+            .column("date")
+            .field("groupTypes", (root, query, cb) -> root.get("groupsTypes"))
+            .build();
+
+    /**
+     * Post listings are paged by {@code (date desc, id desc)}, see {@link PostRepository#findPageAfter}.
+     */
+    public static final Sort POST_PAGE_ORDER = Sort.by(Sort.Order.desc("date"), Sort.Order.desc("id"));
+
+    private final EntityManager entityManager;
+
+    public SparseFieldRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * @param names the fields to select, derived ones are skipped
+     * @param maxResults the row limit, or 0 for none
+     */
+    public <E> List<Tuple> findAll(SparseFields<E> fields,
+                                   Collection<String> names,
+                                   @Nullable Specification<E> specification,
+                                   Sort sort,
+                                   int maxResults) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<E> root = query.from(fields.getType());
+        query.multiselect(names.stream()
+                .filter(fields::isSelectable)
+                .map(name -> fields.select(name, root, query, cb))
+                .collect(Collectors.toList()));
+        if (specification != null) {
+            Predicate predicate = specification.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        TypedQuery<Tuple> typed = entityManager.createQuery(query);
+        if (maxResults > 0) {
+            typed.setMaxResults(maxResults);
+        }
+        return typed.getResultList();
+    }
+
+    public static <E> Specification<E> hasId(String id) {
+        return (root, query, cb) -> cb.equal(root.get(SparseFields.ID), id);
+    }
+
+    public static Specification<Post> inBlog(String blogId) {
+        return (root, query, cb) -> cb.equal(root.get("blog").get("id"), blogId);
+    }
+
+    /**
+     * Same as {@code bitand(column, :mask) <> 0} in the repositories, for the enum
+     * bitmask columns.
+     */
+    public static <E> Specification<E> hasAnyOf(String attribute, int mask) {
+        return (root, query, cb) -> cb.notEqual(
+                cb.function("bitand", Integer.class, root.get(attribute), cb.literal(mask)), 0);
+    }
+
+    public static Specification<Post> postedBefore(LocalDateTime date, String id) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("date"), date),
+                cb.or(cb.lessThan(root.get("date"), date), cb.lessThan(root.get(SparseFields.ID), id)));
+    }
+
+    private static Subquery<Long> countPosts(Root<Blog> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        Subquery<Long> count = query.subquery(Long.class);
+        Root<Post> post = count.from(Post.class);
+        return count.select(cb.count(post)).where(cb.equal(post.get("blog"), root));
+    }
+}
@@ -0,0 +1,112 @@
+package com.folksdev.blog.repository;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fields of one resource that can be picked with {@code ?fields=}, each with the
+ * expression it is read from. Joins are made only by the fields that need them, so a
+ * tuple query over the picked fields reads neither unrequested columns nor tables.
+ * <p>
+ * Derived fields are not read by the query, the service fills them in afterwards.
+ * The id can always be selected, as every resource needs it to page or to load
+ * derived fields.
+ */
+public final class SparseFields<E> {
+
+    public static final String ID = "id";
+
+    private final Class<E> type;
+    private final Map<String, Selector<E>> selectors;
+    private final Set<String> names;
+
+    private SparseFields(Class<E> type, Map<String, Selector<E>> selectors, Set<String> names) {
+        this.type = type;
+        this.selectors = selectors;
+        this.names = names;
+    }
+
+    public static <E> Builder<E> of(Class<E> type) {
+        return new Builder<>(type);
+    }
+
+    /**
+     * Reuses the join of an earlier field, so two fields of the same association
+     * share one join.
+     */
+    @SuppressWarnings("unchecked")
+    public static <X, Y> Join<X, Y> join(From<?, X> from, String attribute) {
+        for (Join<X, ?> join : from.getJoins()) {
+            if (join.getAttribute().getName().equals(attribute)) {
+                return (Join<X, Y>) join;
+            }
+        }
+        return from.join(attribute);
+    }
+
+    Class<E> getType() {
+        return type;
+    }
+
+    /**
+     * @return the names clients may ask for, in the order they were declared
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    boolean isSelectable(String name) {
+        return selectors.containsKey(name);
+    }
+
+    Selection<?> select(String name, Root<E> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        return selectors.get(name).select(root, query, cb).alias(name);
+    }
+
+    @FunctionalInterface
+    public interface Selector<E> {
+        Selection<?> select(Root<E> root, CriteriaQuery<?> query, CriteriaBuilder cb);
+    }
+
+    public static final class Builder<E> {
+        private final Class<E> type;
+        private final Map<String, Selector<E>> selectors = new LinkedHashMap<>();
+        private final Set<String> names = new LinkedHashSet<>();
+
+        private Builder(Class<E> type) {
+            this.type = type;
+            selectors.put(ID, (root, query, cb) -> root.get(ID));
+        }
+
+        public Builder<E> field(String name, Selector<E> selector) {
+            selectors.put(name, selector);
+            names.add(name);
+            return this;
+        }
+
+        /**
+         * A column of the entity itself, named like its attribute.
+         */
+        public Builder<E> column(String name) {
+            return field(name, (root, query, cb) -> root.get(name));
+        }
+
+        public Builder<E> derived(String name) {
+            names.add(name);
+            return this;
+        }
+
+        public SparseFields<E> build() {
+            return new SparseFields<>(type, selectors, Collections.unmodifiableSet(names));
+        }
+    }
+}
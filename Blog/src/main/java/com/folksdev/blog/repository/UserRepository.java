@@ -2,9 +2,15 @@ package com.folksdev.blog.repository;
 
 import com.folksdev.blog.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface UserRepository extends JpaRepository<User,String> {
 
     boolean existsByUsernameOrEmail(String username, String email);
 
+    @Query("select count(u) > 0 from User u where (u.username = :username or u.email = :email) and u.id <> :id")
+    boolean existsOtherByUsernameOrEmail(@Param("username") String username, @Param("email") String email,
+                                         @Param("id") String id);
+
 }
@@ -1,16 +1,30 @@
 package com.folksdev.blog.service;
 
 
+import com.folksdev.blog.concurrent.Coalesced;
 import com.folksdev.blog.dto.BlogDto;
+import com.folksdev.blog.dto.BlogSummaryDto;
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.requests.CreateBlogRequest;
+import com.folksdev.blog.dto.requests.PatchBlogRequest;
 import com.folksdev.blog.dto.converter.BlogDtoConverter;
+import com.folksdev.blog.event.BlogChangedEvent;
 import com.folksdev.blog.exception.BlogNotFoundException;
 import com.folksdev.blog.exception.BlogUniqueConstraintsViolatedException;
 import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.PurgeTarget;
 import com.folksdev.blog.model.User;
 import com.folksdev.blog.repository.BlogRepository;
+import com.folksdev.blog.web.IfMatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,30 +34,43 @@ public class BlogService {
 
     private final BlogRepository blogRepository;
     private final BlogDtoConverter blogDtoConverter;
+    private final CommentPreviewLoader commentPreviewLoader;
     private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PurgeService purgeService;
+    private final UniquenessCheck uniquenessCheck;
 
 
-    public BlogService(BlogRepository blogRepository, BlogDtoConverter blogDtoConverter, UserService userService) {
+    public BlogService(BlogRepository blogRepository, BlogDtoConverter blogDtoConverter,
+                       CommentPreviewLoader commentPreviewLoader, UserService userService,
+                       ApplicationEventPublisher eventPublisher, PurgeService purgeService,
+                       @Value("${blog.uniqueness-check:QUERY}") UniquenessCheck uniquenessCheck) {
         this.blogRepository = blogRepository;
         this.blogDtoConverter = blogDtoConverter;
+        this.commentPreviewLoader = commentPreviewLoader;
         this.userService = userService;
+        this.eventPublisher = eventPublisher;
+        this.purgeService = purgeService;
+        this.uniquenessCheck = uniquenessCheck;
     }
 
     public BlogDto createBlog(CreateBlogRequest createBlogRequest, String userId) {
         User user = userService.findUserById(userId);
-        checkUniqueConstraints(userId);
+        if (uniquenessCheck == UniquenessCheck.QUERY) {
+            checkUniqueConstraints(userId);
+        }
         Blog blog = new Blog(
                 createBlogRequest.getTitle(),
                 createBlogRequest.getDescription(),
                 createBlogRequest.getContent(),
                 user
         );
-        return blogDtoConverter.convert(blogRepository.save(blog));
+        return toDto(blogRepository.save(blog));
 
     }
 
     public BlogDto updateBlog(CreateBlogRequest updateBlogRequest, String blogId) {
-        Blog blog = findBlogById(blogId);
+        Blog blog = findAggregateById(blogId);
         blog = new Blog(
                 blog.getId(),
                 updateBlogRequest.getTitle(),
@@ -51,18 +78,66 @@ public class BlogService {
                 updateBlogRequest.getContent(),
                 blog.getDate(),
                 blog.getUser(),
-                blog.getPosts()
+                blog.getPosts(),
+                blog.getVersion()
         );
-        return blogDtoConverter.convert(blogRepository.save(blog));
+        blog = blogRepository.save(blog);
+        eventPublisher.publishEvent(new BlogChangedEvent(blogId));
+        return toDto(blog);
     }
 
-    public List<BlogDto> getBlogs() {
-        return blogRepository.findAll().stream().map(blogDtoConverter::convert)
-                .collect(Collectors.toList());
+    /**
+     * Changes the fields present in the request on the managed blog, so the flush writes
+     * only those columns and the version, conditional on the version read here.
+     */
+    @Transactional
+    public Versioned<BlogDto> patchBlog(String blogId, PatchBlogRequest patchBlogRequest, @Nullable String ifMatch) {
+        Blog blog = findAggregateById(blogId);
+        IfMatch.check(ifMatch, String.valueOf(blog.getVersion()));
+        if (patchBlogRequest.getTitle() != null) {
+            blog.setTitle(patchBlogRequest.getTitle());
+        }
+        if (patchBlogRequest.getDescription() != null) {
+            blog.setDescription(patchBlogRequest.getDescription());
+        }
+        if (patchBlogRequest.getContent() != null) {
+            blog.setContent(patchBlogRequest.getContent());
+        }
+        blogRepository.flush();
+        eventPublisher.publishEvent(new BlogChangedEvent(blogId));
+        return new Versioned<>(toDto(blog), String.valueOf(blog.getVersion()));
     }
 
+    public List<BlogSummaryDto> getBlogs() {
+        return blogRepository.findAllSummaries();
+    }
+
+    @Coalesced("blog")
+    @Transactional(readOnly = true)
     public BlogDto getBlogById(String blogId) {
-        return blogDtoConverter.convert(findBlogById(blogId));
+        return toDto(findAggregateById(blogId));
+    }
+
+    /*
+     * The dto shows the content of every post, which a plain load of the blog leaves
+     * to one select per post.
+     */
+    private Blog findAggregateById(String blogId) {
+        return blogRepository.findAggregateById(blogId)
+                .orElseThrow(() -> new BlogNotFoundException("Couldn't find blog by id: " + blogId));
+    }
+
+    private BlogDto toDto(Blog blog) {
+        List<String> postIds = blog.getPosts().stream().map(Post::getId).collect(Collectors.toList());
+        return blogDtoConverter.convert(blog, commentPreviewLoader.load(postIds));
+    }
+
+    public void incrementVersion(String blogId) {
+        blogRepository.incrementVersion(blogId);
+    }
+
+    public void incrementVersionByPostId(String postId) {
+        blogRepository.incrementVersionByPostId(postId);
     }
 
     public Blog findBlogById(String id) {
@@ -70,11 +145,12 @@ public class BlogService {
                 .orElseThrow(() -> new BlogNotFoundException("Couldn't find blog by id: " + id));
     }
 
-    public String deleteBlog(String blogId) {
-            findBlogById(blogId);
-            blogRepository.deleteById(blogId);
-            return "Blog successfully deleted from database with id:" + blogId;
-
+    @Transactional
+    public PurgeJobDto deleteBlog(String blogId) {
+            Blog blog = findBlogById(blogId);
+            blog.setDeletedAt(LocalDateTime.now());
+            eventPublisher.publishEvent(new BlogChangedEvent(blogId));
+            return purgeService.schedulePurge(PurgeTarget.BLOG, blogId);
     }
 
     public void checkUniqueConstraints(String userId)
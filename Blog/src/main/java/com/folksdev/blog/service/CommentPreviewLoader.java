@@ -0,0 +1,61 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.dto.CommentDto;
+import com.folksdev.blog.dto.CommentPreview;
+import com.folksdev.blog.repository.CommentPreviewRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the comment previews shown with posts: the latest {@code size} comments of each
+ * post and its comment count, for a whole list of posts in one query. The full thread
+ * is paged through {@link CommentService#getCommentsByPostId}.
+ */
+@Component
+public class CommentPreviewLoader {
+
+    private final CommentPreviewRepository commentPreviewRepository;
+    private final int size;
+
+    public CommentPreviewLoader(CommentPreviewRepository commentPreviewRepository,
+                                @Value("${blog.comment-preview.size:3}") int size) {
+        this.commentPreviewRepository = commentPreviewRepository;
+        this.size = size;
+    }
+
+    /**
+     * @return a preview for every one of the posts, {@link CommentPreview#NONE} for
+     * those without comments
+     */
+    public Map<String, CommentPreview> load(Collection<String> postIds) {
+        Map<String, CommentPreview> previews = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return previews;
+        }
+        Map<String, List<CommentDto>> latest = new HashMap<>();
+        Map<String, Long> totals = new HashMap<>();
+        for (Object[] row : commentPreviewRepository.findLatestByPostIds(postIds, size)) {
+            String postId = (String) row[0];
+            latest.computeIfAbsent(postId, id -> new ArrayList<>())
+                    .add(new CommentDto((String) row[1], ((Timestamp) row[2]).toLocalDateTime(), "", (String) row[3]));
+            totals.put(postId, ((Number) row[4]).longValue());
+        }
+        for (String postId : postIds) {
+            previews.put(postId, latest.containsKey(postId)
+                    ? new CommentPreview(latest.get(postId), totals.get(postId))
+                    : CommentPreview.NONE);
+        }
+        return previews;
+    }
+
+    public CommentPreview load(String postId) {
+        return load(List.of(postId)).get(postId);
+    }
+}
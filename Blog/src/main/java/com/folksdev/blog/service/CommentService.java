@@ -1,34 +1,53 @@
 package com.folksdev.blog.service;
 
+import com.folksdev.blog.dto.AcceptedCommentDto;
 import com.folksdev.blog.dto.CommentDto;
+import com.folksdev.blog.dto.CursorPageDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.converter.CommentDtoConverter;
 import com.folksdev.blog.dto.requests.CreateCommentRequest;
+import com.folksdev.blog.dto.requests.PatchCommentRequest;
+import com.folksdev.blog.event.BlogChangedEvent;
 import com.folksdev.blog.exception.CommentNotFoundException;
+import com.folksdev.blog.exception.CommentQueueFullException;
 import com.folksdev.blog.model.Comment;
 import com.folksdev.blog.model.Post;
 import com.folksdev.blog.model.User;
 import com.folksdev.blog.repository.CommentRepository;
+import com.folksdev.blog.web.IfMatch;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @Service
 public class CommentService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
 
     private final CommentRepository commentRepository;
     private final CommentDtoConverter commentDtoConverter;
     private final PostService postService;
     private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CommentWriteBehindQueue commentQueue;
 
 
-    public CommentService(CommentRepository commentRepository, CommentDtoConverter commentDtoConverter, PostService postService, UserService userService) {
+    public CommentService(CommentRepository commentRepository, CommentDtoConverter commentDtoConverter, PostService postService, UserService userService,
+                          ApplicationEventPublisher eventPublisher, CommentWriteBehindQueue commentQueue) {
         this.commentRepository = commentRepository;
         this.commentDtoConverter = commentDtoConverter;
         this.postService = postService;
         this.userService = userService;
+        this.eventPublisher = eventPublisher;
+        this.commentQueue = commentQueue;
     }
 
     public CommentDto getCommentById(String id) {
@@ -36,16 +55,35 @@ public class CommentService {
     }
 
     public Comment findCommentById(String id) {
-        return commentRepository.findById(id)
+        return commentRepository.findVisibleById(id)
                 .orElseThrow(() -> new CommentNotFoundException("Couldn't find comment by id: " + id));
     }
 
-    public List<CommentDto> getCommentsByPostId(String postId) {
-        postService.findPostById(postId);
-        return commentRepository.findAllByPostId(postId).stream()
-                .map(commentDtoConverter::convert).collect(Collectors.toList());
+    /**
+     * The thread of a post, newest first, one page per call; see {@link PostService#getPosts}.
+     */
+    public CursorPageDto<CommentDto> getCommentsByPostId(String postId, @Nullable String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        // one extra row tells us whether another page exists without a count query
+        PageRequest pageable = PageRequest.of(0, pageSize + 1);
+        List<CommentDto> comments = after == null
+                ? commentRepository.findFirstPageByPostId(postId, pageable)
+                : commentRepository.findPageByPostIdAfter(postId, after.getDate(), after.getId(), pageable);
+        if (comments.isEmpty()) {
+            // an empty thread and an unknown post look the same to the projection
+            postService.findPostById(postId);
+        }
+        String nextCursor = null;
+        if (comments.size() > pageSize) {
+            comments = comments.subList(0, pageSize);
+            CommentDto last = comments.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPageDto<>(comments, nextCursor);
     }
 
+    @Transactional
     public CommentDto createComment(String postId, String userId, CreateCommentRequest createCommentRequest) {
         Post post = postService.findPostById(postId);
         User user = userService.findUserById(userId);
@@ -54,23 +92,67 @@ public class CommentService {
                 post,
                 user
         );
-        return commentDtoConverter.convert(commentRepository.save(comment));
+        comment = commentRepository.save(comment);
+        postService.incrementVersion(postId);
+        eventPublisher.publishEvent(new BlogChangedEvent(post.getBlog().getId()));
+        return commentDtoConverter.convert(comment);
+    }
+
+    /**
+     * Checks the post and user, then leaves the insert to {@link CommentWriteBehindQueue}.
+     * The user usually comes from the second level cache, so this costs one lookup of
+     * the post's blog id.
+     */
+    public AcceptedCommentDto acceptComment(String postId, String userId, CreateCommentRequest createCommentRequest) {
+        String blogId = postService.findBlogIdByPostId(postId);
+        userService.findUserById(userId);
+        String id = UUID.randomUUID().toString();
+        LocalDateTime date = LocalDateTime.now();
+        if (!commentQueue.offer(id, createCommentRequest.getBody(), date, postId, blogId, userId)) {
+            throw new CommentQueueFullException("Too many comments are waiting to be written, please retry shortly.");
+        }
+        return new AcceptedCommentDto(id, createCommentRequest.getBody(),
+                date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
     }
 
+    @Transactional
     public CommentDto updateComment(String id, CreateCommentRequest createCommentRequest) {
         Comment comment = findCommentById(id);
         comment = new Comment(comment.getId(),
                 createCommentRequest.getBody(),
                 LocalDateTime.now(),
                 comment.getPost(),
-                comment.getUser()
+                comment.getUser(),
+                comment.getVersion()
         );
+        postService.incrementVersion(comment.getPost().getId());
+        eventPublisher.publishEvent(new BlogChangedEvent(comment.getPost().getBlog().getId()));
         return commentDtoConverter.convert(commentRepository.save(comment));
     }
 
+    /**
+     * A new body also moves the date, as with {@link #updateComment}.
+     */
+    @Transactional
+    public Versioned<CommentDto> patchComment(String id, PatchCommentRequest patchCommentRequest, @Nullable String ifMatch) {
+        Comment comment = findCommentById(id);
+        IfMatch.check(ifMatch, String.valueOf(comment.getVersion()));
+        if (patchCommentRequest.getBody() != null) {
+            comment.setBody(patchCommentRequest.getBody());
+            comment.setDate(LocalDateTime.now());
+        }
+        commentRepository.flush();
+        postService.incrementVersion(comment.getPost().getId());
+        eventPublisher.publishEvent(new BlogChangedEvent(comment.getPost().getBlog().getId()));
+        return new Versioned<>(commentDtoConverter.convert(comment), String.valueOf(comment.getVersion()));
+    }
+
+    @Transactional
     public String deleteComment(String commentId) {
-            findCommentById(commentId);
+            Comment comment = findCommentById(commentId);
             commentRepository.deleteById(commentId);
+            postService.incrementVersion(comment.getPost().getId());
+            eventPublisher.publishEvent(new BlogChangedEvent(comment.getPost().getBlog().getId()));
             return "Comment successfully deleted from database :" + commentId;
     }
 
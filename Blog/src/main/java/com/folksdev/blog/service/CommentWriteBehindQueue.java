@@ -0,0 +1,225 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.event.BlogChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded buffer between accepted comments and the database. A single writer thread
+ * drains it in batches of up to {@code batchSize} comments, each inserted as one JDBC
+ * batch in one transaction that also bumps the versions of the posts and blogs it
+ * touched.
+ * <p>
+ * A batch the database refuses is retried comment by comment, so a comment on a post
+ * deleted meanwhile is dropped alone. Comments still queued are written on shutdown,
+ * those of a crashed instance are lost; that is the price of answering before the
+ * insert.
+ */
+@Component
+public class CommentWriteBehindQueue implements SmartLifecycle, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentWriteBehindQueue.class);
+
+    private static final String INSERT = "insert into comment (comment_id, body, date, post_id, user_id, version) "
+            + "values (?, ?, ?, ?, ?, 0)";
+    private static final long POLL_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PostService postService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<PendingComment> queue;
+    private final int batchSize;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public CommentWriteBehindQueue(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   PostService postService,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${blog.comment-queue.capacity:10000}") int capacity,
+                                   @Value("${blog.comment-queue.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.postService = postService;
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return false if the queue is full and the comment was not taken
+     */
+    public boolean offer(String id, String body, LocalDateTime date, String postId, String blogId, String userId) {
+        boolean accepted = queue.offer(new PendingComment(id, body, date, postId, blogId, userId));
+        if (!accepted) {
+            rejected.increment();
+        }
+        return accepted;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "comment-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Blocks until the comments accepted so far are written. Does nothing if the
+     * context failed before this bean was started.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, which stops taking requests first.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("blog.comment.queue.size", queue, BlockingQueue::size)
+                .description("Accepted comments not yet written")
+                .register(registry);
+        FunctionCounter.builder("blog.comment.queue.written", written, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("blog.comment.queue.dropped", dropped, LongAdder::sum)
+                .description("Accepted comments the database refused")
+                .register(registry);
+        FunctionCounter.builder("blog.comment.queue.rejected", rejected, LongAdder::sum)
+                .description("Comments turned away because the queue was full")
+                .register(registry);
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                writeNext(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // keep the writer alive whatever a batch ran into
+                log.error("Writing queued comments failed", e);
+            }
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for a comment, then writes it together with
+     * whatever else is queued, up to a full batch.
+     *
+     * @return the number of comments taken from the queue
+     */
+    int writeNext(long timeoutMillis) throws InterruptedException {
+        PendingComment first = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+        List<PendingComment> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+        return batch.size();
+    }
+
+    private void write(List<PendingComment> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            written.add(batch.size());
+        } catch (DataAccessException | TransactionException e) {
+            if (batch.size() == 1) {
+                PendingComment comment = batch.get(0);
+                dropped.increment();
+                log.warn("Dropped comment {} on post {}: {}", comment.id, comment.postId, e.getMessage());
+                return;
+            }
+            batch.forEach(comment -> write(List.of(comment)));
+        }
+    }
+
+    private void insert(List<PendingComment> batch) {
+        jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, comment) -> {
+            ps.setString(1, comment.id);
+            ps.setString(2, comment.body);
+            ps.setTimestamp(3, Timestamp.valueOf(comment.date));
+            ps.setString(4, comment.postId);
+            ps.setString(5, comment.userId);
+        });
+        Set<String> postIds = new LinkedHashSet<>();
+        Set<String> blogIds = new LinkedHashSet<>();
+        batch.forEach(comment -> {
+            postIds.add(comment.postId);
+            blogIds.add(comment.blogId);
+        });
+        postIds.forEach(postService::incrementVersion);
+        blogIds.forEach(blogId -> eventPublisher.publishEvent(new BlogChangedEvent(blogId)));
+    }
+
+    private static final class PendingComment {
+        private final String id;
+        private final String body;
+        private final LocalDateTime date;
+        private final String postId;
+        private final String blogId;
+        private final String userId;
+
+        private PendingComment(String id, String body, LocalDateTime date, String postId, String blogId, String userId) {
+            this.id = id;
+            this.body = body;
+            this.date = date;
+            this.postId = postId;
+            this.blogId = blogId;
+            this.userId = userId;
+        }
+    }
+}
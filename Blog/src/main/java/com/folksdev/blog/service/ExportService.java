@@ -0,0 +1,102 @@
+package com.folksdev.blog.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.folksdev.blog.dto.converter.PostDtoConverter;
+import com.folksdev.blog.repository.CommentRepository;
+import com.folksdev.blog.repository.PostRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes whole tables as newline-delimited JSON while reading them. The rows come from
+ * repository streams that fetch {@value PostRepository#EXPORT_FETCH_SIZE} at a time,
+ * and the persistence context is cleared after each such chunk, so memory use does not
+ * grow with the table.
+ * <p>
+ * The body is written on an async request thread in a read-only transaction of its
+ * own, which holds a connection until the client has taken the last line.
+ */
+@Service
+public class ExportService {
+
+    private static final int CHUNK_SIZE = Integer.parseInt(PostRepository.EXPORT_FETCH_SIZE);
+
+    private final PostService postService;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final PostDtoConverter postDtoConverter;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public ExportService(PostService postService,
+                         PostRepository postRepository,
+                         CommentRepository commentRepository,
+                         PostDtoConverter postDtoConverter,
+                         EntityManager entityManager,
+                         PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper) {
+        this.postService = postService;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.postDtoConverter = postDtoConverter;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Posts come without their comments, those are exported per post.
+     */
+    public StreamingResponseBody exportPosts() {
+        return out -> export(out, () -> postRepository.streamAllWithBlogAndUser()
+                .map(postDtoConverter::convertWithoutComments));
+    }
+
+    public StreamingResponseBody exportCommentsByPostId(String postId) {
+        // checked before the response is committed, so an unknown post still gets its 404
+        postService.findPostById(postId);
+        return out -> export(out, () -> commentRepository.streamCommentDtosByPostId(postId));
+    }
+
+    private void export(OutputStream out, Supplier<Stream<?>> rows) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeLines(out, rows.get()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeLines(OutputStream out, Stream<?> rows) {
+        try (rows; JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            long written = 0;
+            for (Iterator<?> it = rows.iterator(); it.hasNext(); ) {
+                writer.writeValue(generator, it.next());
+                generator.writeRaw('\n');
+                if (++written % CHUNK_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,27 +2,40 @@ package com.folksdev.blog.service;
 
 import com.folksdev.blog.dto.requests.CreateGroupRequest;
 import com.folksdev.blog.dto.GroupDto;
+import com.folksdev.blog.dto.GroupMembersAddedDto;
 import com.folksdev.blog.dto.converter.GroupDtoConverter;
 import com.folksdev.blog.exception.GroupNotFoundException;
 import com.folksdev.blog.exception.GroupUniqueConstraintsViolatedException;
+import com.folksdev.blog.exception.UserNotFoundException;
 import com.folksdev.blog.model.Group;
 import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.GroupsTypeConverter;
 import com.folksdev.blog.repository.GroupRepository;
+import com.folksdev.blog.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 public class GroupService {
 
+    private static final GroupsTypeConverter GROUPS_TYPE_CONVERTER = new GroupsTypeConverter();
+
     private final GroupRepository groupRepository;
+    private final UserRepository userRepository;
     private final GroupDtoConverter groupDtoConverter;
+    private final UniquenessCheck uniquenessCheck;
 
 
-    public GroupService(GroupRepository groupRepository, GroupDtoConverter groupDtoConverter) {
+    public GroupService(GroupRepository groupRepository, UserRepository userRepository, GroupDtoConverter groupDtoConverter,
+                        @Value("${blog.uniqueness-check:QUERY}") UniquenessCheck uniquenessCheck) {
         this.groupRepository = groupRepository;
+        this.userRepository = userRepository;
         this.groupDtoConverter = groupDtoConverter;
+        this.uniquenessCheck = uniquenessCheck;
     }
 
     public List<GroupDto> getGroups() {
@@ -30,6 +43,12 @@ public class GroupService {
                 .collect(Collectors.toList());
     }
 
+    public List<GroupDto> getGroupsByType(GroupsType type) {
+        int mask = GROUPS_TYPE_CONVERTER.convertToDatabaseColumn(List.of(type));
+        return groupRepository.findAllByTypesMask(mask).stream().map(groupDtoConverter::convert)
+                .collect(Collectors.toList());
+    }
+
     public GroupDto getGroupById(String id) {
         return groupDtoConverter.convert(findGroupById(id));
     }
@@ -41,8 +60,10 @@ public class GroupService {
 
 
     public GroupDto createGroup(CreateGroupRequest createGroupRequest) {
-        Group test = new Group("","",List.of(GroupsType.DEFAULT));
-        checkUniqueConstraints(createGroupRequest.getName(),test);
+        if (uniquenessCheck == UniquenessCheck.QUERY) {
+            Group test = new Group("","",List.of(GroupsType.DEFAULT));
+            checkUniqueConstraints(createGroupRequest.getName(),test);
+        }
         Group group = new Group(
                 createGroupRequest.getName(),
                 createGroupRequest.getDescription(),
@@ -53,18 +74,51 @@ public class GroupService {
 
     public GroupDto updateGroup(String id, CreateGroupRequest createGroupRequest) {
         Group group = findGroupById(id);
-        checkUniqueConstraints(createGroupRequest.getName(),group);
+        if (uniquenessCheck == UniquenessCheck.QUERY) {
+            checkUniqueConstraints(createGroupRequest.getName(),group);
+        }
         group = new Group(
                 group.getId(),
                 createGroupRequest.getName(),
                 createGroupRequest.getDescription(),
                 group.getDate(),
                 createGroupRequest.getGroupsTypes(),
-                group.getUsers()
+                group.getUsers(),
+                group.getVersion()
         );
         return groupDtoConverter.convert(groupRepository.save(group));
     }
 
+    /**
+     * Idempotent. The group usually comes from the second level cache, which leaves a
+     * single insert however many groups the user is in already; the user is looked up
+     * only when that inserted nothing.
+     */
+    public void addMember(String groupId, String userId) {
+        findGroupById(groupId);
+        if (groupRepository.addMember(userId, groupId) == 0) {
+            requireUser(userId);
+        }
+    }
+
+    public GroupMembersAddedDto addMembers(String groupId, List<String> userIds) {
+        findGroupById(groupId);
+        return new GroupMembersAddedDto(groupRepository.addMembers(new LinkedHashSet<>(userIds), groupId));
+    }
+
+    public void removeMember(String groupId, String userId) {
+        findGroupById(groupId);
+        if (groupRepository.removeMember(userId, groupId) == 0) {
+            requireUser(userId);
+        }
+    }
+
+    private void requireUser(String userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("Couldn't find user by id: " + userId);
+        }
+    }
+
     public void checkUniqueConstraints(String name,Group group) {
         if(groupRepository.existsByName(name)&&!group.getName().equals(name))
         { throw new GroupUniqueConstraintsViolatedException("This group name is already taken!");}
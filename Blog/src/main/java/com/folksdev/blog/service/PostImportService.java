@@ -0,0 +1,152 @@
+package com.folksdev.blog.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.folksdev.blog.dto.ImportResultDto;
+import com.folksdev.blog.dto.ImportStatus;
+import com.folksdev.blog.dto.requests.CreatePostRequest;
+import com.folksdev.blog.event.BlogChangedEvent;
+import com.folksdev.blog.exception.InvalidImportException;
+import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Imports a JSON array of posts into one blog while reading it, one transaction per
+ * chunk of valid posts. Inserts within a chunk go out as JDBC batches, see
+ * {@code hibernate.jdbc.batch_size} in application.properties.
+ */
+@Service
+public class PostImportService {
+
+    private final BlogService blogService;
+    private final PostRepository postRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public PostImportService(BlogService blogService,
+                             PostRepository postRepository,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${blog.post-import.chunk-size:1000}") int chunkSize) {
+        this.blogService = blogService;
+        this.postRepository = postRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Chunks committed before a syntax error in the upload stay imported, the valid
+     * posts read since the last of them are dropped.
+     */
+    public List<ImportResultDto> importPosts(String blogId, InputStream json) {
+        blogService.findBlogById(blogId);
+        List<ImportResultDto> results = new ArrayList<>();
+        Map<Integer, CreatePostRequest> chunk = new LinkedHashMap<>();
+        int index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidImportException("Expected a JSON array of posts");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode item = parser.readValueAsTree();
+                readItem(index, item, chunk, results);
+                index++;
+                if (chunk.size() == chunkSize) {
+                    results.addAll(saveChunk(blogId, chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            long imported = results.stream().filter(r -> r.getStatus() == ImportStatus.CREATED).count();
+            throw new InvalidImportException("Malformed JSON after " + index + " posts, " + imported
+                    + " of them were imported: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        results.addAll(saveChunk(blogId, chunk));
+        results.sort(Comparator.comparingInt(ImportResultDto::getIndex));
+        return results;
+    }
+
+    private void readItem(int index, JsonNode item, Map<Integer, CreatePostRequest> chunk,
+                          List<ImportResultDto> results) {
+        CreatePostRequest request;
+        try {
+            request = objectMapper.treeToValue(item, CreatePostRequest.class);
+        } catch (JsonProcessingException e) {
+            results.add(new ImportResultDto(index, ImportStatus.INVALID, null,
+                    Map.of("post", e.getOriginalMessage())));
+            return;
+        }
+        Set<ConstraintViolation<CreatePostRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            Map<String, String> errors = new HashMap<>();
+            violations.forEach(v -> errors.put(v.getPropertyPath().toString(), v.getMessage()));
+            results.add(new ImportResultDto(index, ImportStatus.INVALID, null, errors));
+            return;
+        }
+        chunk.put(index, request);
+    }
+
+    private List<ImportResultDto> saveChunk(String blogId, Map<Integer, CreatePostRequest> chunk) {
+        if (chunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                Blog blog = entityManager.getReference(Blog.class, blogId);
+                List<ImportResultDto> saved = new ArrayList<>(chunk.size());
+                chunk.forEach((index, request) -> {
+                    Post post = postRepository.save(new Post(
+                            request.getTitle(),
+                            request.getContent(),
+                            request.getTopicsTypes(),
+                            blog));
+                    saved.add(new ImportResultDto(index, ImportStatus.CREATED, post.getId()));
+                });
+                blogService.incrementVersion(blogId);
+                eventPublisher.publishEvent(new BlogChangedEvent(blogId));
+                entityManager.flush();
+                // a request scoped persistence context would otherwise keep every imported post
+                entityManager.clear();
+                return saved;
+            });
+        } catch (DataAccessException | TransactionException e) {
+            Map<String, String> errors = Map.of("post", NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            List<ImportResultDto> failed = new ArrayList<>(chunk.size());
+            chunk.keySet().forEach(index -> failed.add(new ImportResultDto(index, ImportStatus.FAILED, null, errors)));
+            return failed;
+        }
+    }
+}
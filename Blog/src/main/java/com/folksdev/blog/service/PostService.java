@@ -1,35 +1,73 @@
 package com.folksdev.blog.service;
 
+import com.folksdev.blog.concurrent.Coalesced;
+import com.folksdev.blog.dto.CommentPreview;
+import com.folksdev.blog.dto.CursorPageDto;
 import com.folksdev.blog.dto.PostDto;
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.converter.PostDtoConverter;
 import com.folksdev.blog.dto.requests.CreatePostRequest;
+import com.folksdev.blog.dto.requests.PatchPostRequest;
+import com.folksdev.blog.event.BlogChangedEvent;
 import com.folksdev.blog.exception.PostNotFoundException;
 import com.folksdev.blog.model.Blog;
 import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.PurgeTarget;
+import com.folksdev.blog.model.TopicsType;
+import com.folksdev.blog.model.TopicsTypeConverter;
 import com.folksdev.blog.repository.PostRepository;
+import com.folksdev.blog.web.IfMatch;
+import com.folksdev.blog.web.VersionedEtag;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class PostService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final TopicsTypeConverter TOPICS_TYPE_CONVERTER = new TopicsTypeConverter();
+
     private final BlogService blogService;
     private final PostRepository postRepository;
     private final PostDtoConverter postDtoConverter;
+    private final CommentPreviewLoader commentPreviewLoader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PurgeService purgeService;
+    private final ResourceVersionService resourceVersionService;
 
-    public PostService(BlogService blogService, PostRepository postRepository, PostDtoConverter postDtoConverter) {
+    public PostService(BlogService blogService, PostRepository postRepository, PostDtoConverter postDtoConverter,
+                       CommentPreviewLoader commentPreviewLoader, ApplicationEventPublisher eventPublisher,
+                       PurgeService purgeService, ResourceVersionService resourceVersionService) {
         this.blogService = blogService;
         this.postRepository = postRepository;
         this.postDtoConverter = postDtoConverter;
+        this.commentPreviewLoader = commentPreviewLoader;
+        this.eventPublisher = eventPublisher;
+        this.purgeService = purgeService;
+        this.resourceVersionService = resourceVersionService;
     }
 
-    public List<PostDto> getPostsByBlogId(String blogId) {
-         blogService.findBlogById(blogId);
-         return postRepository.findAllByBlogId(blogId).stream()
-                .map(postDtoConverter::convert).collect(Collectors.toList());
+    public CursorPageDto<PostDto> getPostsByBlogId(String blogId, String cursor, int size) {
+        blogService.findBlogById(blogId);
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        return getPage(size, pageable -> after == null
+                ? postRepository.findFirstPageByBlogId(blogId, pageable)
+                : postRepository.findPageByBlogIdAfter(blogId, after.getDate(), after.getId(), pageable));
     }
 
+    @Transactional
     public PostDto createPostByBlogId(String blogId, CreatePostRequest createPostRequest) {
         Blog blog= blogService.findBlogById(blogId);
         Post post = new Post(
@@ -38,11 +76,15 @@ public class PostService {
                 createPostRequest.getTopicsTypes(),
                 blog
         );
-        return postDtoConverter.convert(postRepository.save(post));
+        post = postRepository.save(post);
+        blogService.incrementVersion(blog.getId());
+        eventPublisher.publishEvent(new BlogChangedEvent(blog.getId()));
+        return postDtoConverter.convert(post, CommentPreview.NONE);
     }
 
+    @Transactional
     public PostDto updatePostById(String postId, CreatePostRequest createPostRequest) {
-        Post post = findPostById(postId);
+        Post post = findWithContentById(postId);
         post = new Post(
                 post.getId(),
                 createPostRequest.getTitle(),
@@ -50,14 +92,80 @@ public class PostService {
                 post.getDate(),
                 createPostRequest.getTopicsTypes(),
                 post.getComments(),
-                post.getBlog()
+                post.getBlog(),
+                post.getVersion()
         );
-        return postDtoConverter.convert(postRepository.save(post));
+        blogService.incrementVersion(post.getBlog().getId());
+        eventPublisher.publishEvent(new BlogChangedEvent(post.getBlog().getId()));
+        return toDto(postRepository.save(post));
+    }
+
+    /**
+     * Same as {@link BlogService#patchBlog}, the blog is bumped as for any post change.
+     * The post detail is tagged with the post and the blog version, so that tag is what
+     * If-Match is checked against and what the response is tagged with.
+     */
+    @Transactional
+    public Versioned<PostDto> patchPostById(String postId, PatchPostRequest patchPostRequest, @Nullable String ifMatch) {
+        Post post = findWithContentById(postId);
+        if (ifMatch != null) {
+            // a query of its own, so only for a conditional request
+            IfMatch.check(ifMatch, findAggregateVersion(postId));
+        }
+        if (patchPostRequest.getTitle() != null) {
+            post.setTitle(patchPostRequest.getTitle());
+        }
+        if (patchPostRequest.getContent() != null) {
+            post.setContent(patchPostRequest.getContent());
+        }
+        if (patchPostRequest.getTopicsTypes() != null) {
+            post.setTopicsTypes(patchPostRequest.getTopicsTypes());
+        }
+        postRepository.flush();
+        blogService.incrementVersion(post.getBlog().getId());
+        eventPublisher.publishEvent(new BlogChangedEvent(post.getBlog().getId()));
+        return new Versioned<>(toDto(post), findAggregateVersion(postId));
+    }
+
+    public CursorPageDto<PostDto> getPosts(String cursor, int size) {
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        return getPage(size, pageable -> after == null
+                ? postRepository.findFirstPage(pageable)
+                : postRepository.findPageAfter(after.getDate(), after.getId(), pageable));
+    }
+
+    public CursorPageDto<PostDto> getPostsByTopic(TopicsType topic, String cursor, int size) {
+        int mask = TOPICS_TYPE_CONVERTER.convertToDatabaseColumn(List.of(topic));
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        return getPage(size, pageable -> after == null
+                ? postRepository.findFirstPageByTopicsMask(mask, pageable)
+                : postRepository.findPageByTopicsMaskAfter(mask, after.getDate(), after.getId(), pageable));
+    }
+
+    private CursorPageDto<PostDto> getPage(int size, Function<PageRequest, List<Post>> query) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // one extra row tells us whether another page exists without a count query
+        List<Post> posts = query.apply(PageRequest.of(0, pageSize + 1));
+        String nextCursor = null;
+        if (posts.size() > pageSize) {
+            posts = posts.subList(0, pageSize);
+            Post last = posts.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.getDate(), last.getId()).encode();
+        }
+        Map<String, CommentPreview> comments =
+                commentPreviewLoader.load(posts.stream().map(Post::getId).collect(Collectors.toList()));
+        return new CursorPageDto<>(posts.stream()
+                .map(post -> postDtoConverter.convert(post, comments.get(post.getId())))
+                .collect(Collectors.toList()),
+                nextCursor);
     }
 
-    public List<PostDto> getPosts() {
-        return postRepository.findAll().stream().map(postDtoConverter::convert)
-                .collect(Collectors.toList());
+    /**
+     * Marks the post and its blog as changed after a write to one of its comments.
+     */
+    public void incrementVersion(String postId) {
+        postRepository.incrementVersion(postId);
+        blogService.incrementVersionByPostId(postId);
     }
 
     public Post findPostById(String postId) {
@@ -65,13 +173,37 @@ public class PostService {
                 .orElseThrow(() -> new PostNotFoundException("Couldn't find post by id: " + postId));
     }
 
+    public String findBlogIdByPostId(String postId) {
+        return postRepository.findBlogIdById(postId)
+                .orElseThrow(() -> new PostNotFoundException("Couldn't find post by id: " + postId));
+    }
+
+    @Coalesced("post")
     public PostDto getPostById(String postId) {
-        return postDtoConverter.convert(findPostById(postId));
+        return toDto(findWithContentById(postId));
+    }
+
+    private Post findWithContentById(String postId) {
+        return postRepository.findWithContentById(postId)
+                .orElseThrow(() -> new PostNotFoundException("Couldn't find post by id: " + postId));
+    }
+
+    private String findAggregateVersion(String postId) {
+        return resourceVersionService.getVersion(VersionedEtag.Resource.POST, postId)
+                .orElseThrow(() -> new PostNotFoundException("Couldn't find post by id: " + postId));
+    }
+
+    private PostDto toDto(Post post) {
+        return postDtoConverter.convert(post, commentPreviewLoader.load(post.getId()));
     }
 
-    public String deletePost(String postId) {
-            findPostById(postId);
-            postRepository.deleteById(postId);
-            return "Post successfully deleted from database :" + postId;
+    @Transactional
+    public PurgeJobDto deletePost(String postId) {
+            Post post = findPostById(postId);
+            post.setDeletedAt(LocalDateTime.now());
+            postRepository.flush();
+            blogService.incrementVersion(post.getBlog().getId());
+            eventPublisher.publishEvent(new BlogChangedEvent(post.getBlog().getId()));
+            return purgeService.schedulePurge(PurgeTarget.POST, postId);
     }
 }
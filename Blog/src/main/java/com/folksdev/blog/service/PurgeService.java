@@ -0,0 +1,34 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.dto.converter.PurgeJobDtoConverter;
+import com.folksdev.blog.exception.PurgeJobNotFoundException;
+import com.folksdev.blog.model.PurgeJob;
+import com.folksdev.blog.model.PurgeTarget;
+import com.folksdev.blog.repository.PurgeJobRepository;
+import org.springframework.stereotype.Service;
+
+@Service
+public class PurgeService {
+
+    private final PurgeJobRepository purgeJobRepository;
+    private final PurgeJobDtoConverter purgeJobDtoConverter;
+
+    public PurgeService(PurgeJobRepository purgeJobRepository, PurgeJobDtoConverter purgeJobDtoConverter) {
+        this.purgeJobRepository = purgeJobRepository;
+        this.purgeJobDtoConverter = purgeJobDtoConverter;
+    }
+
+    /**
+     * Records the purge of an already hidden target; {@link PurgeWorker} picks it up.
+     * Joins the caller's transaction, so the job exists exactly if the mark does.
+     */
+    public PurgeJobDto schedulePurge(PurgeTarget targetType, String targetId) {
+        return purgeJobDtoConverter.convert(purgeJobRepository.save(new PurgeJob(targetType, targetId)));
+    }
+
+    public PurgeJobDto getPurgeJobById(String id) {
+        return purgeJobDtoConverter.convert(purgeJobRepository.findById(id)
+                .orElseThrow(() -> new PurgeJobNotFoundException("Couldn't find purge job by id: " + id)));
+    }
+}
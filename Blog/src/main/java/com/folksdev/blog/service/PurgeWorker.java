@@ -0,0 +1,286 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.model.PurgeStatus;
+import com.folksdev.blog.model.PurgeTarget;
+import com.folksdev.blog.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes what a user, blog or post deletion only marked. Each target type has a fixed
+ * list of steps, children before parents, and every step walks its rows in key order
+ * {@code batchSize} at a time, each batch in its own short transaction that also
+ * records the progress on the {@code purge_job} row. No entity is loaded, and no lock
+ * is held longer than one batch.
+ * <p>
+ * The steps before the last one only keep the batches small: the foreign keys delete
+ * children with their parent, so the final delete of the target also takes whatever
+ * was added below it after its step had passed, e.g. a queued comment.
+ * <p>
+ * Runs on plain JDBC, so the polling stays out of the Hibernate statistics. The job's
+ * version guards against a second instance working on the same job. A job whose batch
+ * fails {@code maxAttempts} times in a row is marked {@code FAILED} and left for an
+ * operator, so it cannot hold up the jobs queued after it.
+ * <p>
+ * {@code blog.purge.enabled=false} keeps the worker thread from starting; the jobs are
+ * then only worked on by calls to {@link #purgeNext()}.
+ */
+@Component
+public class PurgeWorker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PurgeWorker.class);
+
+    private static final String SELECT_OPEN_JOB = "select job_id, target_type, target_id, step, last_key, version "
+            + "from purge_job where status in ('PENDING', 'RUNNING') order by created_at limit 1";
+    private static final String UPDATE_JOB = "update purge_job set status = ?, step = ?, last_key = ?, "
+            + "deleted_rows = deleted_rows + ?, finished_at = ?, attempts = 0, version = version + 1 "
+            + "where job_id = ? and version = ?";
+    private static final String RECORD_FAILED_ATTEMPT = "update purge_job set attempts = attempts + 1, "
+            + "status = case when attempts + 1 >= ? then 'FAILED' else status end, version = version + 1 "
+            + "where job_id = ? and version = ?";
+
+    private static final Step COMMENTS_OF_POST = new Step(
+            "select comment_id from comment where post_id = ? and comment_id > ? order by comment_id limit ?",
+            "delete from comment where comment_id in (%s)");
+    private static final Step COMMENTS_IN_BLOG = new Step(
+            "select c.comment_id from comment c join post p on p.post_id = c.post_id "
+                    + "where p.blog_id = ? and c.comment_id > ? order by c.comment_id limit ?",
+            "delete from comment where comment_id in (%s)");
+    private static final Step COMMENTS_OF_USER = new Step(
+            "select comment_id from comment where user_id = ? and comment_id > ? order by comment_id limit ?",
+            "delete from comment where comment_id in (%s)");
+    private static final Step COMMENTS_IN_USERS_BLOG = new Step(
+            "select c.comment_id from comment c join post p on p.post_id = c.post_id "
+                    + "join blog b on b.blog_id = p.blog_id "
+                    + "where b.user_id = ? and c.comment_id > ? order by c.comment_id limit ?",
+            "delete from comment where comment_id in (%s)");
+    private static final Step POST = new Step(
+            "select post_id from post where post_id = ? and post_id > ? order by post_id limit ?",
+            "delete from post where post_id in (%s)");
+    private static final Step POSTS_OF_BLOG = new Step(
+            "select post_id from post where blog_id = ? and post_id > ? order by post_id limit ?",
+            "delete from post where post_id in (%s)");
+    private static final Step POSTS_IN_USERS_BLOG = new Step(
+            "select p.post_id from post p join blog b on b.blog_id = p.blog_id "
+                    + "where b.user_id = ? and p.post_id > ? order by p.post_id limit ?",
+            "delete from post where post_id in (%s)");
+    private static final Step BLOG = new Step(
+            "select blog_id from blog where blog_id = ? and blog_id > ? order by blog_id limit ?",
+            "delete from blog where blog_id in (%s)");
+    private static final Step BLOG_OF_USER = new Step(
+            "select blog_id from blog where user_id = ? and blog_id > ? order by blog_id limit ?",
+            "delete from blog where blog_id in (%s)");
+    private static final Step MEMBERSHIPS_OF_USER = new Step(
+            "select group_id from users_groups where user_id = ? and group_id > ? order by group_id limit ?",
+            "delete from users_groups where user_id = ? and group_id in (%s)");
+    private static final Step USER = new Step(
+            "select user_id from blog_user where user_id = ? and user_id > ? order by user_id limit ?",
+            "delete from blog_user where user_id in (%s)");
+
+    private static final Map<PurgeTarget, List<Step>> STEPS = Map.of(
+            PurgeTarget.POST, List.of(COMMENTS_OF_POST, POST),
+            PurgeTarget.BLOG, List.of(COMMENTS_IN_BLOG, POSTS_OF_BLOG, BLOG),
+            PurgeTarget.USER, List.of(COMMENTS_OF_USER, COMMENTS_IN_USERS_BLOG, POSTS_IN_USERS_BLOG, BLOG_OF_USER,
+                    MEMBERSHIPS_OF_USER, USER));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final long pollMillis;
+    private final int maxAttempts;
+    private final boolean enabled;
+
+    private volatile boolean running;
+    private Thread purger;
+
+    public PurgeWorker(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       EntityManagerFactory entityManagerFactory,
+                       @Value("${blog.purge.batch-size:1000}") int batchSize,
+                       @Value("${blog.purge.poll-millis:1000}") long pollMillis,
+                       @Value("${blog.purge.max-attempts:5}") int maxAttempts,
+                       @Value("${blog.purge.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.maxAttempts = maxAttempts;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return enabled;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        purger = new Thread(this::run, "purger");
+        purger.setDaemon(true);
+        purger.start();
+    }
+
+    /**
+     * Jobs are resumed from their last batch after a restart, so there is nothing to
+     * finish here. Does nothing if the worker was never started.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (purger == null) {
+            return;
+        }
+        purger.interrupt();
+        try {
+            purger.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (!purgeNext()) {
+                    Thread.sleep(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Purging failed", e);
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes one batch of the oldest unfinished job. A failed batch is rolled back and
+     * counted on the job, and the caller waits before trying again.
+     *
+     * @return false if there was no job to work on or its batch failed
+     */
+    public boolean purgeNext() {
+        List<OpenJob> jobs = jdbcTemplate.query(SELECT_OPEN_JOB, (rs, rowNum) -> new OpenJob(
+                rs.getString("job_id"),
+                PurgeTarget.valueOf(rs.getString("target_type")),
+                rs.getString("target_id"),
+                rs.getInt("step"),
+                rs.getString("last_key"),
+                rs.getLong("version")));
+        if (jobs.isEmpty()) {
+            return false;
+        }
+        OpenJob job = jobs.get(0);
+        try {
+            transactionTemplate.executeWithoutResult(status -> purgeBatch(job));
+        } catch (OptimisticLockingFailureException e) {
+            // another instance took this batch, the next call reads where it left off
+        } catch (RuntimeException e) {
+            log.error("Purging job " + job.id + " failed", e);
+            jdbcTemplate.update(RECORD_FAILED_ATTEMPT, maxAttempts, job.id, job.version);
+            return false;
+        }
+        return true;
+    }
+
+    private void purgeBatch(OpenJob job) {
+        List<Step> steps = STEPS.get(job.targetType);
+        Step step = steps.get(job.step);
+        List<String> keys = jdbcTemplate.queryForList(step.select, String.class, job.targetId, job.lastKey, batchSize);
+        int deleted = keys.isEmpty() ? 0 : jdbcTemplate.update(step.delete(keys.size()), step.deleteArgs(job.targetId, keys));
+
+        PurgeStatus status = PurgeStatus.RUNNING;
+        int nextStep = job.step;
+        String lastKey = keys.isEmpty() ? job.lastKey : keys.get(keys.size() - 1);
+        Timestamp finishedAt = null;
+        if (keys.size() < batchSize) {
+            nextStep++;
+            lastKey = "";
+            if (nextStep == steps.size()) {
+                status = PurgeStatus.DONE;
+                finishedAt = Timestamp.valueOf(LocalDateTime.now());
+            }
+        }
+        int updated = jdbcTemplate.update(UPDATE_JOB, status.name(), nextStep, lastKey, deleted, finishedAt,
+                job.id, job.version);
+        if (updated == 0) {
+            throw new OptimisticLockingFailureException("Purge job " + job.id + " was changed meanwhile");
+        }
+        if (status == PurgeStatus.DONE && job.targetType == PurgeTarget.USER) {
+            // the soft deleted user may still sit in the second level cache
+            entityManagerFactory.getCache().evict(User.class, job.targetId);
+        }
+    }
+
+    private static final class Step {
+        private final String select;
+        private final String delete;
+        private final boolean scopedToTarget;
+
+        private Step(String select, String delete) {
+            this.select = select;
+            this.delete = delete;
+            this.scopedToTarget = delete.indexOf('?') >= 0;
+        }
+
+        private String delete(int keyCount) {
+            return String.format(delete, String.join(", ", Collections.nCopies(keyCount, "?")));
+        }
+
+        private Object[] deleteArgs(String targetId, List<String> keys) {
+            List<Object> args = new ArrayList<>(keys.size() + 1);
+            if (scopedToTarget) {
+                args.add(targetId);
+            }
+            args.addAll(keys);
+            return args.toArray();
+        }
+    }
+
+    private static final class OpenJob {
+        private final String id;
+        private final PurgeTarget targetType;
+        private final String targetId;
+        private final int step;
+        private final String lastKey;
+        private final long version;
+
+        private OpenJob(String id, PurgeTarget targetType, String targetId, int step, String lastKey, long version) {
+            this.id = id;
+            this.targetType = targetType;
+            this.targetId = targetId;
+            this.step = step;
+            this.lastKey = lastKey;
+            this.version = version;
+        }
+    }
+}
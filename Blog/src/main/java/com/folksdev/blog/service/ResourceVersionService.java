@@ -0,0 +1,43 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.repository.BlogRepository;
+import com.folksdev.blog.repository.PostRepository;
+import com.folksdev.blog.web.BlogDetailCache;
+import com.folksdev.blog.web.VersionedEtag;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+@Service
+public class ResourceVersionService {
+
+    private final BlogRepository blogRepository;
+    private final PostRepository postRepository;
+    private final BlogDetailCache blogDetailCache;
+
+    public ResourceVersionService(BlogRepository blogRepository, PostRepository postRepository,
+                                  BlogDetailCache blogDetailCache) {
+        this.blogRepository = blogRepository;
+        this.postRepository = postRepository;
+        this.blogDetailCache = blogDetailCache;
+    }
+
+    public Optional<String> getVersion(VersionedEtag.Resource resource, String id) {
+        switch (resource) {
+            case BLOG:
+                // a cached detail is dropped on every change that bumps the version
+                BlogDetailCache.CachedBlogDetail cached = blogDetailCache.getIfPresent(id);
+                if (cached != null) {
+                    return Optional.of(String.valueOf(cached.getVersion()));
+                }
+                return blogRepository.findVersionById(id).map(String::valueOf);
+            case POST:
+                return postRepository.findAggregateVersionById(id);
+            case POST_COMMENTS:
+                // the comment listing shows the post title, which bumps the same version
+                return postRepository.findVersionById(id).map(String::valueOf);
+            default:
+                throw new IllegalArgumentException("Unknown versioned resource: " + resource);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.dto.CommentPreview;
+import com.folksdev.blog.dto.CursorPageDto;
+import com.folksdev.blog.exception.BlogNotFoundException;
+import com.folksdev.blog.exception.GroupNotFoundException;
+import com.folksdev.blog.exception.InvalidFieldsException;
+import com.folksdev.blog.exception.PostNotFoundException;
+import com.folksdev.blog.exception.UserNotFoundException;
+import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.GroupsTypeConverter;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.TopicsType;
+import com.folksdev.blog.model.TopicsTypeConverter;
+import com.folksdev.blog.repository.BlogRepository;
+import com.folksdev.blog.repository.SparseFieldRepository;
+import com.folksdev.blog.repository.SparseFields;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.Tuple;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Answers the GET endpoints of posts, blogs, users and groups when they are called with
+ * {@code ?fields=title,date}. Only the picked fields are selected from the database and
+ * each resource is written as a map of just those fields, in the order they were asked
+ * for. The comments of a post are the only fields not read by that query, their
+ * previews are loaded for the whole page as for the full posts.
+ */
+@Service
+public class SparseFieldService {
+
+    private static final TopicsTypeConverter TOPICS_TYPE_CONVERTER = new TopicsTypeConverter();
+    private static final GroupsTypeConverter GROUPS_TYPE_CONVERTER = new GroupsTypeConverter();
+
+    private final SparseFieldRepository sparseFieldRepository;
+    private final CommentPreviewLoader commentPreviewLoader;
+    private final BlogRepository blogRepository;
+
+    public SparseFieldService(SparseFieldRepository sparseFieldRepository,
+                              CommentPreviewLoader commentPreviewLoader,
+                              BlogRepository blogRepository) {
+        this.sparseFieldRepository = sparseFieldRepository;
+        this.commentPreviewLoader = commentPreviewLoader;
+        this.blogRepository = blogRepository;
+    }
+
+    public CursorPageDto<Map<String, Object>> getPosts(String fields, @Nullable String cursor, int size) {
+        return getPostPage(fields, null, cursor, size);
+    }
+
+    public CursorPageDto<Map<String, Object>> getPostsByBlogId(String blogId, String fields,
+                                                               @Nullable String cursor, int size) {
+        // a count, where loading the blog would read the columns this endpoint leaves out
+        if (!blogRepository.existsById(blogId)) {
+            throw new BlogNotFoundException("Couldn't find blog by id: " + blogId);
+        }
+        return getPostPage(fields, SparseFieldRepository.inBlog(blogId), cursor, size);
+    }
+
+    public CursorPageDto<Map<String, Object>> getPostsByTopic(TopicsType topic, String fields,
+                                                              @Nullable String cursor, int size) {
+        int mask = TOPICS_TYPE_CONVERTER.convertToDatabaseColumn(List.of(topic));
+        return getPostPage(fields, SparseFieldRepository.hasAnyOf("topicsTypes", mask), cursor, size);
+    }
+
+    public Map<String, Object> getPostById(String postId, String fields) {
+        List<String> names = parse(fields, SparseFieldRepository.POST);
+        List<Tuple> rows = sparseFieldRepository.findAll(SparseFieldRepository.POST, withKeys(names),
+                SparseFieldRepository.hasId(postId), Sort.unsorted(), 1);
+        return toPostMaps(rows, names).stream().findFirst()
+                .orElseThrow(() -> new PostNotFoundException("Couldn't find post by id: " + postId));
+    }
+
+    public List<Map<String, Object>> getBlogs(String fields) {
+        return findAll(SparseFieldRepository.BLOG, fields, null, Sort.by(Sort.Order.desc("date")));
+    }
+
+    public Map<String, Object> getBlogById(String blogId, String fields) {
+        return findById(SparseFieldRepository.BLOG, blogId, fields,
+                () -> new BlogNotFoundException("Couldn't find blog by id: " + blogId));
+    }
+
+    public List<Map<String, Object>> getUsers(String fields) {
+        return findAll(SparseFieldRepository.USER, fields, null, Sort.unsorted());
+    }
+
+    public Map<String, Object> getUserById(String id, String fields) {
+        return findById(SparseFieldRepository.USER, id, fields,
+                () -> new UserNotFoundException("Couldn't find user by id: " + id));
+    }
+
+    public List<Map<String, Object>> getGroups(String fields) {
+        return findAll(SparseFieldRepository.GROUP, fields, null, Sort.unsorted());
+    }
+
+    public List<Map<String, Object>> getGroupsByType(GroupsType type, String fields) {
+        int mask = GROUPS_TYPE_CONVERTER.convertToDatabaseColumn(List.of(type));
+        return findAll(SparseFieldRepository.GROUP, fields, SparseFieldRepository.hasAnyOf("groupsTypes", mask),
+                Sort.unsorted());
+    }
+
+    public Map<String, Object> getGroupById(String id, String fields) {
+        return findById(SparseFieldRepository.GROUP, id, fields,
+                () -> new GroupNotFoundException("Couldn't find group by id: " + id));
+    }
+
+    /**
+     * @return the distinct field names of a comma separated list, in their order
+     * @throws InvalidFieldsException if the list is empty or names a field the resource lacks
+     */
+    static List<String> parse(String fields, SparseFields<?> offered) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!offered.getNames().contains(name)) {
+                throw new InvalidFieldsException("Unknown field '" + name + "', expected any of " + offered.getNames());
+            }
+            names.add(name);
+        }
+        if (names.isEmpty()) {
+            throw new InvalidFieldsException("No fields given, expected any of " + offered.getNames());
+        }
+        return new ArrayList<>(names);
+    }
+
+    private CursorPageDto<Map<String, Object>> getPostPage(String fields, @Nullable Specification<Post> filter,
+                                                           @Nullable String cursor, int size) {
+        List<String> names = parse(fields, SparseFieldRepository.POST);
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        int pageSize = Math.min(Math.max(size, 1), PostService.MAX_PAGE_SIZE);
+        Specification<Post> specification = Specification.where(filter)
+                .and(after == null ? null : SparseFieldRepository.postedBefore(after.getDate(), after.getId()));
+        // the page is ordered and continued by date and id, whether they were asked for or not
+        Set<String> selected = withKeys(names);
+        selected.add("date");
+        List<Tuple> rows = sparseFieldRepository.findAll(SparseFieldRepository.POST, selected, specification,
+                SparseFieldRepository.POST_PAGE_ORDER, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            Tuple last = rows.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.get("date", LocalDateTime.class),
+                    last.get(SparseFields.ID, String.class)).encode();
+        }
+        return new CursorPageDto<>(toPostMaps(rows, names), nextCursor);
+    }
+
+    private List<Map<String, Object>> toPostMaps(List<Tuple> rows, List<String> names) {
+        Map<String, CommentPreview> comments = Map.of();
+        if (names.contains("comments") || names.contains("commentCount")) {
+            comments = commentPreviewLoader.load(rows.stream()
+                    .map(row -> row.get(SparseFields.ID, String.class))
+                    .collect(Collectors.toList()));
+        }
+        List<Map<String, Object>> posts = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            CommentPreview preview = comments.getOrDefault(row.get(SparseFields.ID, String.class), CommentPreview.NONE);
+            Map<String, Object> post = new LinkedHashMap<>();
+            for (String name : names) {
+                if (name.equals("comments")) {
+                    post.put(name, preview.getLatest());
+                } else if (name.equals("commentCount")) {
+                    post.put(name, preview.getTotal());
+                } else {
+                    post.put(name, row.get(name));
+                }
+            }
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    private <E> List<Map<String, Object>> findAll(SparseFields<E> offered, String fields,
+                                                  @Nullable Specification<E> specification, Sort sort) {
+        List<String> names = parse(fields, offered);
+        return sparseFieldRepository.findAll(offered, names, specification, sort, 0).stream()
+                .map(row -> toMap(row, names))
+                .collect(Collectors.toList());
+    }
+
+    private <E> Map<String, Object> findById(SparseFields<E> offered, String id, String fields,
+                                             Supplier<RuntimeException> notFound) {
+        List<String> names = parse(fields, offered);
+        return sparseFieldRepository.findAll(offered, names, SparseFieldRepository.hasId(id), Sort.unsorted(), 1)
+                .stream()
+                .map(row -> toMap(row, names))
+                .findFirst()
+                .orElseThrow(notFound);
+    }
+
+    private static Set<String> withKeys(List<String> names) {
+        Set<String> selected = new LinkedHashSet<>(names);
+        selected.add(SparseFields.ID);
+        return selected;
+    }
+
+    private static Map<String, Object> toMap(Tuple row, List<String> names) {
+        Map<String, Object> resource = new LinkedHashMap<>();
+        for (String name : names) {
+            resource.put(name, row.get(name));
+        }
+        return resource;
+    }
+}
@@ -0,0 +1,22 @@
+package com.folksdev.blog.service;
+
+/**
+ * How the services keep a write from breaking a unique constraint, chosen with
+ * {@code blog.uniqueness-check}.
+ */
+public enum UniquenessCheck {
+
+    /**
+     * The default. Look for a conflicting row before writing, for users only when the
+     * {@link UserUniquenessFilter} can't rule the values out. Still leaves concurrent
+     * writes to the constraint.
+     */
+    QUERY,
+
+    /**
+     * Write straight away and let the database refuse a conflict, which
+     * {@link com.folksdev.blog.exception.GeneralExceptionAdvisor} turns into the same
+     * response the query would have given.
+     */
+    CONSTRAINT
+}
@@ -0,0 +1,313 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.dto.ImportResultDto;
+import com.folksdev.blog.dto.ImportStatus;
+import com.folksdev.blog.dto.UserImportResultDto;
+import com.folksdev.blog.dto.requests.CreateUserRequest;
+import com.folksdev.blog.exception.InvalidImportException;
+import com.folksdev.blog.model.Gender;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Imports users from a CSV upload whose header row names the fields of
+ * {@link CreateUserRequest}. Valid rows are staged in a session local table, through
+ * COPY on PostgreSQL and JDBC batches elsewhere, and username and email conflicts, with
+ * stored users as well as between rows of the upload, are then settled by one update
+ * and one insert instead of a query per user.
+ * <p>
+ * The import is a single transaction: a malformed upload imports nothing, and a signup
+ * taking a staged value between the conflict check and the insert fails the whole
+ * import on the unique constraints.
+ */
+@Service
+public class UserImportService {
+
+    static final List<String> COLUMNS = List.of("name", "surname", "username", "email", "dateOfBirth", "gender");
+    private static final int MAX_LENGTH = 255;
+
+    private static final String STAGING_COLUMNS = "row_index, user_id, name, surname, username, email, date_of_birth, gender";
+    private static final String DROP_STAGING = "drop table if exists user_import";
+    private static final String CREATE_STAGING = "create local temporary table user_import ("
+            + "row_index integer not null, user_id varchar(255) not null, name varchar(255) not null, "
+            + "surname varchar(255) not null, username varchar(255) not null, email varchar(255) not null, "
+            + "date_of_birth date not null, gender integer not null, "
+            + "username_taken boolean default false not null, email_taken boolean default false not null)";
+    private static final String COPY_STAGING = "copy user_import (" + STAGING_COLUMNS + ") from stdin (format csv)";
+    private static final String INSERT_STAGING = "insert into user_import (" + STAGING_COLUMNS + ") "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final List<String> INDEX_STAGING = List.of(
+            "create index on user_import (username)",
+            "create index on user_import (email)",
+            "analyze user_import");
+    // a value repeated within the upload goes to its first row, even if that row loses on its other value
+    private static final String MARK_CONFLICTS = "update user_import i set "
+            + "username_taken = exists (select 1 from blog_user u where u.username = i.username) "
+            + "or exists (select 1 from user_import j where j.username = i.username and j.row_index < i.row_index), "
+            + "email_taken = exists (select 1 from blog_user u where u.email = i.email) "
+            + "or exists (select 1 from user_import j where j.email = i.email and j.row_index < i.row_index)";
+    private static final String INSERT_USERS = "insert into blog_user "
+            + "(user_id, name, surname, username, email, date_of_birth, gender, version) "
+            + "select user_id, name, surname, username, email, date_of_birth, gender, 0 from user_import "
+            + "where not username_taken and not email_taken";
+    private static final String SELECT_IMPORTED = "select username, email from user_import "
+            + "where not username_taken and not email_taken";
+    private static final String SELECT_CONFLICTS = "select row_index, username_taken, email_taken from user_import "
+            + "where username_taken or email_taken";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    @Nullable
+    private final UserUniquenessFilter uniquenessFilter;
+    private final int batchSize;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             Validator validator,
+                             @Nullable UserUniquenessFilter uniquenessFilter,
+                             @Value("${blog.user-import.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.uniquenessFilter = uniquenessFilter;
+        this.batchSize = batchSize;
+    }
+
+    public UserImportResultDto importUsers(Reader csv) {
+        CSVParser parser = open(csv);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(DROP_STAGING);
+            jdbcTemplate.execute(CREATE_STAGING);
+            boolean copy = Boolean.TRUE.equals(jdbcTemplate.execute(
+                    (ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class)));
+            List<ImportResultDto> rejected = jdbcTemplate.execute(
+                    (ConnectionCallback<List<ImportResultDto>>) connection -> stage(parser, copy
+                            ? new CopyStaging(connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING))
+                            : new BatchStaging()));
+            if (copy) {
+                INDEX_STAGING.forEach(jdbcTemplate::execute);
+            }
+            jdbcTemplate.update(MARK_CONFLICTS);
+            int imported = jdbcTemplate.update(INSERT_USERS);
+            // rows written past JPA never reach UserUniquenessListener
+            if (uniquenessFilter != null) {
+                jdbcTemplate.query(SELECT_IMPORTED,
+                        (RowCallbackHandler) rs -> uniquenessFilter.add(rs.getString("username"), rs.getString("email")));
+            }
+            jdbcTemplate.query(SELECT_CONFLICTS, (RowCallbackHandler) rs -> {
+                Map<String, String> errors = new HashMap<>();
+                if (rs.getBoolean("username_taken")) {
+                    errors.put("username", "is already taken");
+                }
+                if (rs.getBoolean("email_taken")) {
+                    errors.put("email", "is already taken");
+                }
+                rejected.add(new ImportResultDto(rs.getInt("row_index"), ImportStatus.CONFLICT, null, errors));
+            });
+            jdbcTemplate.execute(DROP_STAGING);
+            rejected.sort(Comparator.comparingInt(ImportResultDto::getIndex));
+            return new UserImportResultDto(imported, rejected);
+        });
+    }
+
+    private CSVParser open(Reader csv) {
+        CSVParser parser;
+        try {
+            parser = CSVFormat.DEFAULT.builder()
+                    .setHeader()
+                    .setSkipHeaderRecord(true)
+                    .setTrim(true)
+                    .build()
+                    .parse(csv);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidImportException("Malformed CSV header: " + e.getMessage());
+        }
+        List<String> missing = new ArrayList<>(COLUMNS);
+        missing.removeAll(parser.getHeaderNames());
+        if (!missing.isEmpty()) {
+            throw new InvalidImportException("CSV header lacks the columns " + missing);
+        }
+        return parser;
+    }
+
+    private List<ImportResultDto> stage(CSVParser parser, Staging staging) throws SQLException {
+        List<ImportResultDto> rejected = new ArrayList<>();
+        int index = 0;
+        try {
+            for (CSVRecord record : parser) {
+                Map<String, String> errors = new HashMap<>();
+                Object[] row = readRow(index, record, errors);
+                if (errors.isEmpty()) {
+                    staging.add(row);
+                } else {
+                    rejected.add(new ImportResultDto(index, ImportStatus.INVALID, null, errors));
+                }
+                index++;
+            }
+        } catch (IllegalStateException e) {
+            staging.abort();
+            // the parser wraps its IOExceptions, syntax errors included
+            throw new InvalidImportException("Malformed CSV after " + index + " rows, none of them were imported: "
+                    + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+        } catch (RuntimeException | SQLException e) {
+            staging.abort();
+            throw e;
+        }
+        staging.finish();
+        return rejected;
+    }
+
+    private Object[] readRow(int index, CSVRecord record, Map<String, String> errors) {
+        Map<String, String> values = new HashMap<>();
+        for (String column : COLUMNS) {
+            String value = record.isSet(column) ? record.get(column) : null;
+            values.put(column, value);
+            if (!column.equals("gender")) {
+                Set<ConstraintViolation<CreateUserRequest>> violations =
+                        validator.validateValue(CreateUserRequest.class, column, value);
+                violations.forEach(v -> errors.put(column, v.getMessage()));
+            }
+            if (value != null && value.length() > MAX_LENGTH) {
+                errors.putIfAbsent(column, "size must be at most " + MAX_LENGTH);
+            }
+        }
+        LocalDate dateOfBirth = null;
+        if (!errors.containsKey("dateOfBirth")) {
+            try {
+                dateOfBirth = LocalDate.parse(values.get("dateOfBirth"));
+            } catch (DateTimeParseException e) {
+                errors.put("dateOfBirth", "must be a date like 1999-01-25");
+            }
+        }
+        Gender gender = null;
+        try {
+            gender = Gender.valueOf(Objects.requireNonNull(values.get("gender")).toUpperCase(Locale.ROOT));
+        } catch (NullPointerException | IllegalArgumentException e) {
+            errors.put("gender", "must be one of " + Arrays.toString(Gender.values()));
+        }
+        if (!errors.isEmpty()) {
+            return null;
+        }
+        return new Object[]{
+                index,
+                UUID.randomUUID().toString(),
+                values.get("name"),
+                values.get("surname"),
+                values.get("username"),
+                values.get("email"),
+                dateOfBirth,
+                gender.ordinal()
+        };
+    }
+
+    private interface Staging {
+        void add(Object[] row) throws SQLException;
+
+        void finish() throws SQLException;
+
+        void abort() throws SQLException;
+    }
+
+    /**
+     * Streams rows into the staging table as CSV over the COPY sub-protocol, handing the
+     * driver {@code batchSize} rows at a time.
+     */
+    private class CopyStaging implements Staging {
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder();
+        private final CSVPrinter printer;
+        private int buffered;
+
+        CopyStaging(CopyIn copyIn) {
+            this.copyIn = copyIn;
+            try {
+                this.printer = CSVFormat.DEFAULT.builder().setRecordSeparator('\n').build().print(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void add(Object[] row) throws SQLException {
+            try {
+                printer.printRecord(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (++buffered == batchSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            flush();
+            copyIn.endCopy();
+        }
+
+        @Override
+        public void abort() throws SQLException {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+            buffered = 0;
+        }
+    }
+
+    private class BatchStaging implements Staging {
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public void add(Object[] row) {
+            rows.add(row);
+            if (rows.size() == batchSize) {
+                finish();
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_STAGING, rows);
+                rows.clear();
+            }
+        }
+
+        @Override
+        public void abort() {
+            rows.clear();
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package com.folksdev.blog.service;
 
+import com.folksdev.blog.concurrent.Coalesced;
+import com.folksdev.blog.dto.PurgeJobDto;
 import com.folksdev.blog.dto.UserDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.requests.CreateUserRequest;
 import com.folksdev.blog.dto.converter.UserDtoConverter;
+import com.folksdev.blog.dto.requests.PatchUserRequest;
 import com.folksdev.blog.dto.requests.UpdateUserRequest;
+import com.folksdev.blog.event.UserChangedEvent;
 import com.folksdev.blog.exception.UserNotFoundException;
 import com.folksdev.blog.exception.UserUniqueConstraintsViolatedException;
 import com.folksdev.blog.model.Gender;
-import com.folksdev.blog.model.Group;
+import com.folksdev.blog.model.PurgeTarget;
 import com.folksdev.blog.model.User;
+import com.folksdev.blog.repository.BlogRepository;
+import com.folksdev.blog.repository.PostRepository;
 import com.folksdev.blog.repository.UserRepository;
+import com.folksdev.blog.web.IfMatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.util.HashSet;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,12 +35,30 @@ public class UserService {
     private final UserRepository userRepository;
     private final UserDtoConverter userDtoConverter;
     private final GroupService groupService;
+    private final BlogRepository blogRepository;
+    private final PostRepository postRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    // only there with UniquenessCheck.QUERY
+    @Nullable
+    private final UserUniquenessFilter userUniquenessFilter;
+    private final PurgeService purgeService;
+    private final UniquenessCheck uniquenessCheck;
 
 
-    public UserService(UserRepository userRepository, GroupService groupService, UserDtoConverter userDtoConverter) {
+    public UserService(UserRepository userRepository, GroupService groupService, UserDtoConverter userDtoConverter,
+                       BlogRepository blogRepository, PostRepository postRepository,
+                       ApplicationEventPublisher eventPublisher, @Nullable UserUniquenessFilter userUniquenessFilter,
+                       PurgeService purgeService,
+                       @Value("${blog.uniqueness-check:QUERY}") UniquenessCheck uniquenessCheck) {
         this.userRepository = userRepository;
         this.userDtoConverter = userDtoConverter;
         this.groupService = groupService;
+        this.blogRepository = blogRepository;
+        this.postRepository = postRepository;
+        this.eventPublisher = eventPublisher;
+        this.userUniquenessFilter = userUniquenessFilter;
+        this.purgeService = purgeService;
+        this.uniquenessCheck = uniquenessCheck;
     }
 
     public UserDto createUser(CreateUserRequest createUserRequest) {
@@ -51,31 +80,48 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    @Coalesced("user")
     public UserDto getUserById(String id) {
         return userDtoConverter.convert(findUserById(id));
     }
 
     public User findUserById(String id) {
+        // a cached user skips the @Where of its entity
         return userRepository.findById(id)
+                .filter(user -> user.getDeletedAt() == null)
                 .orElseThrow(() -> new UserNotFoundException("Couldn't find user by id: " + id));
     }
 
-    public String deleteUser(String id) {
-        findUserById(id);
-        userRepository.deleteById(id);
-        return "User successfully deleted from database with id: "+ id ;
+    /**
+     * Hides the user with their blog and comments right away, the rows are deleted by
+     * the returned purge job.
+     */
+    @Transactional
+    public PurgeJobDto deleteUser(String id) {
+        User user = findUserById(id);
+        LocalDateTime now = LocalDateTime.now();
+        user.setDeletedAt(now);
+        if (user.getBlog() != null) {
+            user.getBlog().setDeletedAt(now);
+        }
+        userRepository.flush();
+        // their comments vanish from other blogs and posts
+        blogRepository.incrementVersionsShowingUser(id);
+        postRepository.incrementVersionsCommentedByUser(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
+        return purgeService.schedulePurge(PurgeTarget.USER, id);
     }
 
+    @Transactional
     public UserDto updateUserAddGroup(String userId, String groupId) {
-        Group g = groupService.findGroupById(groupId);
-        User u = findUserById(userId);
-        Set<Group> mergedSet = new HashSet<Group>();
-        mergedSet.addAll(u.getGroups());
-        mergedSet.addAll(Set.of(g));
-        User user = new User(u.getId(),u.getName(),u.getSurname(),u.getUsername(),u.getEmail(),u.getDateOfBirth(),u.getGender(),mergedSet,u.getBlog(),u.getComments());
-        return userDtoConverter.convert(userRepository.save(user));
+        groupService.findGroupById(groupId);
+        User user = findUserById(userId);
+        groupService.addMember(groupId, userId);
+        // the groups are loaded only now, so they include the new one
+        return userDtoConverter.convert(user);
     }
 
+    @Transactional
     public UserDto updateUser(String id, UpdateUserRequest updateUserRequest) {
         User user = findUserById(id);
         checkUniqueConstraints(updateUserRequest.getUsername(),updateUserRequest.getEmail(),user);
@@ -88,13 +134,57 @@ public class UserService {
                 updateUserRequest.getGender(),
                 user.getGroups(),
                 user.getBlog(),
-                user.getComments());
-        return userDtoConverter.convert(userRepository.save(user));
+                user.getComments(),
+                user.getVersion());
+        user = userRepository.save(user);
+        // the user's name and details are part of their blog and of every post they commented on
+        blogRepository.incrementVersionsShowingUser(id);
+        postRepository.incrementVersionsCommentedByUser(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
+        return userDtoConverter.convert(user);
+    }
+
+    @Transactional
+    public Versioned<UserDto> patchUser(String id, PatchUserRequest patchUserRequest, @Nullable String ifMatch) {
+        User user = findUserById(id);
+        IfMatch.check(ifMatch, String.valueOf(user.getVersion()));
+        if (patchUserRequest.getUsername() != null || patchUserRequest.getEmail() != null) {
+            String username = patchUserRequest.getUsername() != null ? patchUserRequest.getUsername() : user.getUsername();
+            String email = patchUserRequest.getEmail() != null ? patchUserRequest.getEmail() : user.getEmail();
+            // the user's own values are in the filter too, so this asks the database about others only
+            if (uniquenessCheck == UniquenessCheck.QUERY && userUniquenessFilter.mightBeTaken(username, email)
+                    && userRepository.existsOtherByUsernameOrEmail(username, email, id)) {
+                throw new UserUniqueConstraintsViolatedException("Username and/or Email already exists!!");
+            }
+            user.setUsername(username);
+            user.setEmail(email);
+        }
+        if (patchUserRequest.getName() != null) {
+            user.setName(patchUserRequest.getName());
+        }
+        if (patchUserRequest.getSurname() != null) {
+            user.setSurname(patchUserRequest.getSurname());
+        }
+        if (patchUserRequest.getDateOfBirth() != null) {
+            user.setDateOfBirth(LocalDate.parse(patchUserRequest.getDateOfBirth()));
+        }
+        if (patchUserRequest.getGender() != null) {
+            user.setGender(patchUserRequest.getGender());
+        }
+        userRepository.flush();
+        blogRepository.incrementVersionsShowingUser(id);
+        postRepository.incrementVersionsCommentedByUser(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
+        return new Versioned<>(userDtoConverter.convert(user), String.valueOf(user.getVersion()));
     }
 
     private void checkUniqueConstraints(String username, String email,User user)
     {
-        if(userRepository.existsByUsernameOrEmail(username,email)&&(!user.getUsername().equals(username) || !user.getEmail().equals(email)))
+        if(uniquenessCheck == UniquenessCheck.CONSTRAINT || !userUniquenessFilter.mightBeTaken(username,email))
+        { return; }
+        boolean taken = userRepository.existsByUsernameOrEmail(username,email);
+        userUniquenessFilter.recordQueryResult(taken);
+        if(taken&&(!user.getUsername().equals(username) || !user.getEmail().equals(email)))
         { throw new UserUniqueConstraintsViolatedException("Username and/or Email already exists!!");}
     }
 }
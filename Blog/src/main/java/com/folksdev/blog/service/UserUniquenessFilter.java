@@ -0,0 +1,112 @@
+package com.folksdev.blog.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over every username and email that was ever stored, so a signup with
+ * fresh values can skip the uniqueness query. A negative answer is definite; a
+ * positive one still goes to the database, as does the unique constraint on insert.
+ * <p>
+ * Values are added as users are persisted or updated and never removed, so values of
+ * deleted users and replaced values keep answering positive until the next start
+ * rebuilds the filter from the table. The observed share of positives the database
+ * then denied is reported as {@code blog.user.uniqueness.filter.false.positive.rate}.
+ * <p>
+ * Users are saved while the entity manager factory is still being built, which is
+ * why this binds its own meters instead of taking the registry.
+ * <p>
+ * Only exists with {@code blog.uniqueness-check=QUERY}. With {@code CONSTRAINT} no
+ * query is left for it to save, and its users would be read at every start for nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "blog.uniqueness-check", havingValue = "QUERY", matchIfMissing = true)
+public class UserUniquenessFilter implements SmartInitializingSingleton, MeterBinder {
+
+    private static final String USERNAME_PREFIX = "username:";
+    private static final String EMAIL_PREFIX = "email:";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BloomFilter<CharSequence> filter;
+    private final LongAdder skippedQueries = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public UserUniquenessFilter(DataSource dataSource,
+                                @Value("${blog.user-uniqueness-filter.expected-insertions:1000000}") long expectedInsertions,
+                                @Value("${blog.user-uniqueness-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions,
+                falsePositiveProbability);
+    }
+
+    /**
+     * Loads the values already stored. Runs once every singleton, the schema included,
+     * is set up and before the web server takes requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.query("select username, email from blog_user",
+                (RowCallbackHandler) rs -> add(rs.getString("username"), rs.getString("email")));
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("blog.user.uniqueness.filter.skipped", skippedQueries, LongAdder::sum)
+                .description("Uniqueness checks answered by the filter alone")
+                .register(registry);
+        FunctionCounter.builder("blog.user.uniqueness.filter.false.positives", falsePositives, LongAdder::sum)
+                .description("Uniqueness checks the filter passed on to the database that found nothing")
+                .register(registry);
+        Gauge.builder("blog.user.uniqueness.filter.false.positive.rate", this, UserUniquenessFilter::falsePositiveRate)
+                .register(registry);
+        Gauge.builder("blog.user.uniqueness.filter.expected.false.positive.rate", filter, BloomFilter::expectedFpp)
+                .register(registry);
+    }
+
+    public void add(String username, String email) {
+        filter.put(USERNAME_PREFIX + username);
+        filter.put(EMAIL_PREFIX + email);
+    }
+
+    /**
+     * @return false only if neither value has ever been stored
+     */
+    public boolean mightBeTaken(String username, String email) {
+        boolean mightBeTaken = filter.mightContain(USERNAME_PREFIX + username)
+                || filter.mightContain(EMAIL_PREFIX + email);
+        if (!mightBeTaken) {
+            skippedQueries.increment();
+        }
+        return mightBeTaken;
+    }
+
+    /**
+     * Records what the database answered for values the filter could not rule out.
+     */
+    public void recordQueryResult(boolean taken) {
+        if (!taken) {
+            falsePositives.increment();
+        }
+    }
+
+    private double falsePositiveRate() {
+        double negatives = skippedQueries.sum() + falsePositives.sum();
+        return negatives == 0 ? 0 : falsePositives.sum() / negatives;
+    }
+}
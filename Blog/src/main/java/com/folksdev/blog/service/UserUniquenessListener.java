@@ -0,0 +1,32 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.model.User;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+
+/**
+ * Feeds every username and email written through JPA into the
+ * {@link UserUniquenessFilter}, whichever code path saved the user, as long as there
+ * is a filter.
+ */
+@Component
+public class UserUniquenessListener {
+
+    @Nullable
+    private final UserUniquenessFilter userUniquenessFilter;
+
+    public UserUniquenessListener(@Nullable UserUniquenessFilter userUniquenessFilter) {
+        this.userUniquenessFilter = userUniquenessFilter;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(User user) {
+        if (userUniquenessFilter != null) {
+            userUniquenessFilter.add(user.getUsername(), user.getEmail());
+        }
+    }
+}
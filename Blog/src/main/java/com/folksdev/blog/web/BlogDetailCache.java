@@ -0,0 +1,108 @@
+package com.folksdev.blog.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.folksdev.blog.dto.BlogDto;
+import com.folksdev.blog.event.BlogChangedEvent;
+import com.folksdev.blog.event.UserChangedEvent;
+import com.folksdev.blog.service.BlogService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Holds the blog detail response as ready serialized JSON together with the version
+ * it was read at, so a hit touches neither JPA nor Jackson.
+ * <p>
+ * Entries are dropped once a write that changes the blog has committed. A read that
+ * was loading the old state at that moment cannot put it back afterwards: Caffeine
+ * makes the invalidation wait for a load in progress on the same key and then removes
+ * what it loaded.
+ */
+@Component
+public class BlogDetailCache implements MeterBinder {
+
+    private final BlogService blogService;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedBlogDetail> cache;
+
+    public BlogDetailCache(BlogService blogService,
+                           ObjectMapper objectMapper,
+                           @Value("${blog.detail-cache.maximum-size:10000}") long maximumSize) {
+        this.blogService = blogService;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public CachedBlogDetail get(String blogId) {
+        return cache.get(blogId, this::load);
+    }
+
+    @Nullable
+    public CachedBlogDetail getIfPresent(String blogId) {
+        return cache.getIfPresent(blogId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBlogChanged(BlogChangedEvent event) {
+        cache.invalidate(event.getBlogId());
+    }
+
+    /**
+     * A user shows up on their blog and beside their comments on any other blog, and
+     * user updates are rare enough not to be worth tracking which blogs those are.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "blogDetail");
+    }
+
+    private CachedBlogDetail load(String blogId) {
+        BlogDto blog = blogService.getBlogById(blogId);
+        try {
+            return new CachedBlogDetail(blog.getVersion(), objectMapper.writeValueAsBytes(blog));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static final class CachedBlogDetail {
+
+        private final Long version;
+        private final byte[] json;
+
+        CachedBlogDetail(Long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.folksdev.blog.web;
+
+import com.folksdev.blog.dto.CursorPageDto;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+
+/**
+ * Answers with the items of a page. If another page follows, a
+ * {@code Link: <...>; rel="next"} header carries the current URL with the next cursor.
+ */
+public final class CursorPageResponse {
+
+    private CursorPageResponse() {
+    }
+
+    public static <T> ResponseEntity<List<T>> of(CursorPageDto<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getItems());
+    }
+}
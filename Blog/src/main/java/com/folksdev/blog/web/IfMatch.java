@@ -0,0 +1,34 @@
+package com.folksdev.blog.web;
+
+import com.folksdev.blog.exception.PreconditionFailedException;
+import org.springframework.lang.Nullable;
+
+/**
+ * Evaluates If-Match against the current ETag of a resource about to be changed. Tags
+ * are compared whole and strongly, so weak ones never match.
+ */
+public final class IfMatch {
+
+    private IfMatch() {
+    }
+
+    /**
+     * Passes when the header is absent, is {@code *} or lists {@code etag}.
+     *
+     * @param etag the unquoted tag a GET of the resource would send now
+     */
+    public static void check(@Nullable String header, String etag) {
+        if (header == null || header.isBlank()) {
+            return;
+        }
+        String tag = "\"" + etag + "\"";
+        for (String candidate : header.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(tag)) {
+                return;
+            }
+        }
+        throw new PreconditionFailedException("The resource was changed since it was read, its current ETag is "
+                + tag + ".");
+    }
+}
@@ -0,0 +1,61 @@
+package com.folksdev.blog.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Wraps a newline-delimited JSON body that is written while it is produced. The body
+ * bypasses {@link ShallowEtagHeaderFilter}, which would buffer all of it to hash it,
+ * and is gzipped on the fly for clients that accept it.
+ * <p>
+ * A full export outlasts the container's default async timeout, so the response gets
+ * {@link #TIMEOUT} of its own; every other async request keeps the default.
+ */
+public final class NdjsonResponse {
+
+    static final long TIMEOUT = Duration.ofHours(1).toMillis();
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private NdjsonResponse() {
+    }
+
+    public static ResponseEntity<StreamingResponseBody> of(StreamingResponseBody body, HttpServletRequest request) {
+        ShallowEtagHeaderFilter.disableContentCaching(request);
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(NdjsonResponse.class, new ExportTimeout());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+            return response.body(body);
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(out -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+            body.writeTo(gzip);
+            gzip.finish();
+        });
+    }
+
+    // runs before the request goes async, when the timeout is still taken from the request
+    private static class ExportTimeout implements CallableProcessingInterceptor {
+
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            if (request instanceof AsyncWebRequest) {
+                ((AsyncWebRequest) request).setTimeout(TIMEOUT);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.folksdev.blog.web;
+
+import com.folksdev.blog.service.ResourceVersionService;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Sets a strong ETag derived from the resource version on handlers annotated with
+ * {@link VersionedEtag} and answers a matching If-None-Match with 304 without
+ * invoking the handler, so nothing but the version is read from the database.
+ */
+@Component
+public class VersionEtagInterceptor implements HandlerInterceptor {
+
+    private final ResourceVersionService resourceVersionService;
+
+    public VersionEtagInterceptor(ResourceVersionService resourceVersionService) {
+        this.resourceVersionService = resourceVersionService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod) || !HttpMethod.GET.matches(request.getMethod())) {
+            return true;
+        }
+        VersionedEtag versionedEtag = ((HandlerMethod) handler).getMethodAnnotation(VersionedEtag.class);
+        if (versionedEtag == null) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String id = pathVariables.get(versionedEtag.pathVariable());
+        // an unknown id gets no tag and falls through to the handler's 404
+        return resourceVersionService.getVersion(versionedEtag.value(), id)
+                .map(version -> !new ServletWebRequest(request, response).checkNotModified(version))
+                .orElse(true);
+    }
+}
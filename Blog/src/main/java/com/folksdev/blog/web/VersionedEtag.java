@@ -0,0 +1,25 @@
+package com.folksdev.blog.web;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a GET handler whose response is fully determined by the version of one
+ * resource. {@link VersionEtagInterceptor} answers conditional requests for it
+ * from that version alone, before the handler runs.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VersionedEtag {
+
+    Resource value();
+
+    /**
+     * Name of the path variable holding the id of the resource.
+     */
+    String pathVariable();
+
+    enum Resource {
+        BLOG, POST, POST_COMMENTS
+    }
+}
@@ -0,0 +1,74 @@
+create table blog_user (
+    user_id       varchar(255) not null,
+    name          varchar(255),
+    surname       varchar(255),
+    username      varchar(255),
+    email         varchar(255),
+    date_of_birth date,
+    gender        integer,
+    constraint pk_blog_user primary key (user_id),
+    constraint uk_blog_user_username unique (username),
+    constraint uk_blog_user_email unique (email)
+);
+
+create table blog (
+    blog_id     varchar(255) not null,
+    title       varchar(255),
+    description varchar(255),
+    content     varchar(255),
+    date        date,
+    user_id     varchar(255),
+    constraint pk_blog primary key (blog_id),
+    constraint uk_blog_user_id unique (user_id),
+    constraint fk_blog_user foreign key (user_id) references blog_user (user_id)
+);
+
+create table post (
+    post_id varchar(255) not null,
+    title   varchar(255),
+    content varchar(255),
+    date    timestamp,
+    blog_id varchar(255),
+    constraint pk_post primary key (post_id),
+    constraint fk_post_blog foreign key (blog_id) references blog (blog_id)
+);
+
+create table post_topics_types (
+    post_post_id varchar(255) not null,
+    topics_types integer,
+    constraint fk_post_topics_types_post foreign key (post_post_id) references post (post_id)
+);
+
+create table comment (
+    comment_id varchar(255) not null,
+    body       varchar(255),
+    date       timestamp,
+    post_id    varchar(255),
+    user_id    varchar(255),
+    constraint pk_comment primary key (comment_id),
+    constraint fk_comment_post foreign key (post_id) references post (post_id),
+    constraint fk_comment_user foreign key (user_id) references blog_user (user_id)
+);
+
+create table blog_group (
+    group_id    varchar(255) not null,
+    name        varchar(255),
+    description varchar(255),
+    date        date,
+    constraint pk_blog_group primary key (group_id),
+    constraint uk_blog_group_name unique (name)
+);
+
+create table group_groups_types (
+    group_group_id varchar(255) not null,
+    groups_types   integer,
+    constraint fk_group_groups_types_group foreign key (group_group_id) references blog_group (group_id)
+);
+
+create table users_groups (
+    user_id  varchar(255) not null,
+    group_id varchar(255) not null,
+    constraint pk_users_groups primary key (group_id, user_id),
+    constraint fk_users_groups_user foreign key (user_id) references blog_user (user_id),
+    constraint fk_users_groups_group foreign key (group_id) references blog_group (group_id)
+);
@@ -0,0 +1,18 @@
+-- Post topics and group types move from their element collection tables into an
+-- integer bitmask on the owning row, bit n standing for the enum constant with
+-- ordinal n (see EnumBitmaskConverter).
+alter table post add column topics_types integer default 0 not null;
+alter table blog_group add column groups_types integer default 0 not null;
+
+update post
+set topics_types = coalesce((select bit_or(cast(power(2, t.topics_types) as integer))
+                             from post_topics_types t
+                             where t.post_post_id = post.post_id), 0);
+
+update blog_group
+set groups_types = coalesce((select bit_or(cast(power(2, t.groups_types) as integer))
+                             from group_groups_types t
+                             where t.group_group_id = blog_group.group_id), 0);
+
+drop table post_topics_types;
+drop table group_groups_types;
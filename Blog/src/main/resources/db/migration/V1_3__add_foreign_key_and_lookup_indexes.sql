@@ -0,0 +1,9 @@
+-- Foreign keys are not indexed on their own. Every listing below reads a parent's
+-- children in date order, so the composite indexes also serve the plain FK
+-- lookups and the cascade deletes through their leading column.
+create index if not exists ix_post_blog_id_date on post (blog_id, date);
+create index if not exists ix_post_date_post_id on post (date, post_id);
+create index if not exists ix_comment_post_id_date on comment (post_id, date);
+create index if not exists ix_comment_user_id on comment (user_id);
+-- the primary key (group_id, user_id) already covers lookups by group
+create index if not exists ix_users_groups_user_id on users_groups (user_id);
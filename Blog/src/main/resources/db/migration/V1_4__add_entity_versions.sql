@@ -0,0 +1,6 @@
+-- Optimistic locking versions, also used to derive the ETags of GET responses.
+alter table blog_user add column version bigint default 0 not null;
+alter table blog add column version bigint default 0 not null;
+alter table post add column version bigint default 0 not null;
+alter table comment add column version bigint default 0 not null;
+alter table blog_group add column version bigint default 0 not null;
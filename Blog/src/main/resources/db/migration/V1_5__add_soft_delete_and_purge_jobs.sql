@@ -0,0 +1,31 @@
+-- Deleting a user, blog or post only stamps deleted_at, which hides it and what lies
+-- under it at once. The rows are then removed in batches by the purge job recorded
+-- in purge_job.
+alter table blog_user add column deleted_at timestamp;
+alter table blog add column deleted_at timestamp;
+alter table post add column deleted_at timestamp;
+
+-- the visibility filters look for the few rows waiting for their purge
+create index if not exists ix_blog_user_deleted_at on blog_user (deleted_at);
+create index if not exists ix_blog_deleted_at on blog (deleted_at);
+create index if not exists ix_post_deleted_at on post (deleted_at);
+
+-- the purge walks a user's comments in comment_id order, which the index on user_id
+-- alone would make it sort on every batch
+create index if not exists ix_comment_user_id_comment_id on comment (user_id, comment_id);
+
+create table purge_job (
+    job_id       varchar(255) not null,
+    target_type  varchar(16)  not null,
+    target_id    varchar(255) not null,
+    status       varchar(16)  not null,
+    step         integer      default 0 not null,
+    last_key     varchar(255) default '' not null,
+    deleted_rows bigint       default 0 not null,
+    created_at   timestamp    not null,
+    finished_at  timestamp,
+    version      bigint       default 0 not null,
+    constraint pk_purge_job primary key (job_id)
+);
+
+create index if not exists ix_purge_job_status_created_at on purge_job (status, created_at);
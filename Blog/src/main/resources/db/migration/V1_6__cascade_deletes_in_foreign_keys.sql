@@ -0,0 +1,25 @@
+-- Children are deleted with their parent by the database in the same statement,
+-- instead of Hibernate loading them and deleting them one by one.
+alter table blog drop constraint fk_blog_user;
+alter table blog add constraint fk_blog_user
+    foreign key (user_id) references blog_user (user_id) on delete cascade;
+
+alter table post drop constraint fk_post_blog;
+alter table post add constraint fk_post_blog
+    foreign key (blog_id) references blog (blog_id) on delete cascade;
+
+alter table comment drop constraint fk_comment_post;
+alter table comment add constraint fk_comment_post
+    foreign key (post_id) references post (post_id) on delete cascade;
+
+alter table comment drop constraint fk_comment_user;
+alter table comment add constraint fk_comment_user
+    foreign key (user_id) references blog_user (user_id) on delete cascade;
+
+alter table users_groups drop constraint fk_users_groups_user;
+alter table users_groups add constraint fk_users_groups_user
+    foreign key (user_id) references blog_user (user_id) on delete cascade;
+
+alter table users_groups drop constraint fk_users_groups_group;
+alter table users_groups add constraint fk_users_groups_group
+    foreign key (group_id) references blog_group (group_id) on delete cascade;
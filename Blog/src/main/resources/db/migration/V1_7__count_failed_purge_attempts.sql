@@ -0,0 +1,3 @@
+-- A purge job whose batch keeps failing is given up after a few attempts, so the jobs
+-- created after it are not stuck behind it.
+alter table purge_job add column attempts integer default 0 not null;
@@ -0,0 +1,6 @@
+-- The comment previews read the latest few comments of a post in (date desc,
+-- comment_id desc) order and count the rest. With comment_id in the index the
+-- tie-break needs no sort, and with user_id the count finds the author of every
+-- comment in the index, so it never reads the comment rows.
+create index if not exists ix_comment_post_id_date_comment_id on comment (post_id, date, comment_id, user_id);
+drop index if exists ix_comment_post_id_date;
@@ -7,6 +7,10 @@ import com.folksdev.blog.dto.converter.*;
 import com.folksdev.blog.model.*;
 import com.folksdev.blog.repository.*;
 import com.folksdev.blog.service.*;
+import com.jayway.jsonpath.JsonPath;
+import com.folksdev.blog.web.BlogDetailCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,7 +18,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.persistence.EntityManagerFactory;
+import java.io.UnsupportedEncodingException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -46,6 +53,10 @@ public class IntegrationTestSupport {
     public PostRepository postRepository;
     @Autowired
     public UserRepository userRepository;
+    @Autowired
+    public PurgeJobRepository purgeJobRepository;
+    @Autowired
+    public PurgeWorker purgeWorker;
 
     @Autowired
     public BlogDtoConverter blogDtoConverter;
@@ -58,6 +69,12 @@ public class IntegrationTestSupport {
     @Autowired
     public UserDtoConverter userDtoConverter;
 
+    @Autowired
+    public BlogDetailCache blogDetailCache;
+
+    @Autowired
+    public EntityManagerFactory entityManagerFactory;
+
     public final ObjectMapper mapper = new ObjectMapper();
 
     @Autowired
@@ -68,6 +85,26 @@ public class IntegrationTestSupport {
         mapper.registerModule(new JavaTimeModule());
         mapper.configure(SerializationFeature.WRITE_DATE_KEYS_AS_TIMESTAMPS,false);
     }
+    /**
+     * Runs the purge job of a delete response, and any job queued before it, so the
+     * marked rows are gone before the test cleans up. The worker thread is off in tests.
+     */
+    public PurgeJob awaitPurge(MvcResult deleteResult) throws UnsupportedEncodingException {
+        String jobId = JsonPath.read(deleteResult.getResponse().getContentAsString(), "$.id");
+        for (int i = 0; i < 500; i++) {
+            PurgeJob job = purgeJobRepository.findById(jobId).orElseThrow();
+            if (job.getStatus() == PurgeStatus.DONE) {
+                return job;
+            }
+            purgeWorker.purgeNext();
+        }
+        throw new AssertionError("Purge job " + jobId + " did not finish");
+    }
+
+    public Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
     public LocalDate generateLocalDate() {
         String now = "2016-11-09 10:30";
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
@@ -0,0 +1,35 @@
+package com.folksdev.blog;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects the SQL Hibernate prepares between {@link #start()} and {@link #stop()}, for
+ * tests that check which columns a path reads rather than how many statements it runs.
+ * Registered for the test context in application.properties.
+ */
+public class SqlStatementRecorder implements StatementInspector {
+
+    private static final List<String> statements = new CopyOnWriteArrayList<>();
+    private static volatile boolean recording;
+
+    public static void start() {
+        statements.clear();
+        recording = true;
+    }
+
+    public static List<String> stop() {
+        recording = false;
+        return List.copyOf(statements);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (recording) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
@@ -125,6 +125,15 @@ public class TestSupport {
                 );
     }
 
+    public BlogSummaryDto generateBlogSummaryDto() {
+        Blog blog = generateBlog("blogId");
+        return new BlogSummaryDto(blog.getTitle(),
+                blog.getDescription(),
+                blog.getDate(),
+                blog.getUser().getUsername(),
+                0L);
+    }
+
     public List<BlogDto> generateBlogDtoList() {
         return List.of(generateBlogDto("id1"),generateBlogDto("id2"));
 
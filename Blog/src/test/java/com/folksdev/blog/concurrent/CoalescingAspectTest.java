@@ -0,0 +1,120 @@
+package com.folksdev.blog.concurrent;
+
+import com.folksdev.blog.exception.BlogNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SlowLoader target;
+    private SlowLoader loader;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        target = new SlowLoader();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new CoalescingAspect(meterRegistry));
+        loader = proxyFactory.getProxy();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCoalesce_whenCallsForSameKeyOverlap_shouldRunLoadOnceAndShareResult() throws Exception {
+        List<Future<String>> results = startOverlappingCalls("blogId", 4);
+
+        for (Future<String> result : results) {
+            assertEquals("loaded blogId", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, target.executions.get());
+        assertEquals(1, meterRegistry.get("blog.coalescing.loads").tag("load", "test").counter().count());
+        assertEquals(3, meterRegistry.get("blog.coalescing.coalesced").tag("load", "test").counter().count());
+    }
+
+    @Test
+    void testCoalesce_whenSharedLoadFails_shouldThrowItsExceptionToEveryCaller() throws Exception {
+        target.failure = new BlogNotFoundException("Couldn't find blog by id: blogId");
+
+        List<Future<String>> results = startOverlappingCalls("blogId", 3);
+
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(target.failure, e.getCause());
+        }
+        assertEquals(1, target.executions.get());
+    }
+
+    @Test
+    void testCoalesce_whenCallsAreSequential_shouldRunLoadEachTime() {
+        target.release.countDown();
+
+        assertEquals("loaded blogId", loader.load("blogId"));
+        assertEquals("loaded blogId", loader.load("blogId"));
+        assertEquals("loaded otherId", loader.load("otherId"));
+
+        assertEquals(3, target.executions.get());
+        assertEquals(3, meterRegistry.get("blog.coalescing.loads").tag("load", "test").counter().count());
+        assertEquals(0, coalescedCount());
+    }
+
+    private List<Future<String>> startOverlappingCalls(String id, int callers) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> loader.load(id)));
+        assertTrue(target.started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < callers; i++) {
+            results.add(executor.submit(() -> loader.load(id)));
+        }
+        // the followers count themselves before they start waiting on the load
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescedCount() < callers - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        target.release.countDown();
+        return results;
+    }
+
+    private double coalescedCount() {
+        return meterRegistry.find("blog.coalescing.coalesced").counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+    }
+
+    public static class SlowLoader {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile RuntimeException failure;
+
+        @Coalesced("test")
+        public String load(String id) {
+            executions.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return "loaded " + id;
+        }
+    }
+}
@@ -2,11 +2,18 @@ package com.folksdev.blog.controller;
 
 import com.folksdev.blog.IntegrationTestSupport;
 import com.folksdev.blog.dto.requests.CreateBlogRequest;
+import com.folksdev.blog.dto.requests.CreateCommentRequest;
+import com.folksdev.blog.dto.requests.CreatePostRequest;
 import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.TopicsType;
 import com.folksdev.blog.model.User;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -14,6 +21,8 @@ import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -36,6 +45,200 @@ class BlogControllerIT extends IntegrationTestSupport {
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
 
+    @Test
+    public void testGetBlogById_whenPostsAndCommentsGrow_shouldRunConstantNumberOfStatements() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        User commenter = userRepository.save(generateUser(2));
+        Blog blog = blogRepository.save(generateBlog(user));
+        blogRepository.save(generateBlog(commenter));
+        Post post = postRepository.save(generatePost(blog));
+        commentRepository.save(generateComment(post, commenter));
+
+        long statementsForSmallBlog = countStatementsOfGetBlogById(blog.getId());
+
+        for (int i = 0; i < 5; i++) {
+            Post morePost = postRepository.save(generatePost(blog));
+            commentRepository.save(generateComment(morePost, user));
+            commentRepository.save(generateComment(morePost, commenter));
+            commentRepository.save(generateComment(morePost, userRepository.save(generateUser(10 + i))));
+        }
+
+        long statementsForLargeBlog = countStatementsOfGetBlogById(blog.getId());
+
+        assertEquals(statementsForSmallBlog, statementsForLargeBlog);
+        // the ETag version lookup plus the two-query fetch plan
+        assertTrue(statementsForLargeBlog <= 3);
+
+        commentRepository.deleteAll();
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private long countStatementsOfGetBlogById(String blogId) throws Exception {
+        // the writes above went around the services, measure a cache miss
+        blogDetailCache.invalidateAll();
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/blog/" + blogId)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        return statistics().getPrepareStatementCount();
+    }
+
+    @Test
+    public void testGetBlogById_whenIfNoneMatchIsCurrent_shouldReturnNotModifiedFromCachedVersion() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        commentRepository.save(generateComment(post, user));
+
+        String etag = this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, Objects.requireNonNull(etag))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        assertEquals(0, statistics().getPrepareStatementCount());
+
+        commentRepository.deleteAll();
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testGetBlogById_whenRequestedAgain_shouldServeCachedBodyWithoutStatements() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        postRepository.save(generatePost(blog));
+
+        String body = this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(body))
+                .andExpect(jsonPath("$.posts", hasSize(1)))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        assertEquals(0, statistics().getPrepareStatementCount());
+
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testGetBlogById_whenCommentWasAddedSinceLastRead_shouldNotServeCachedBody() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[0].comments").doesNotExist());
+
+        CreateCommentRequest request = new CreateCommentRequest("fresh comment");
+        this.mockMvc.perform(post("/v1/comment/" + post.getId() + "/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[0].comments", hasSize(1)))
+                .andExpect(jsonPath("$.posts[0].comments[0].body", is("fresh comment")));
+
+        commentRepository.deleteAll();
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testGetBlogById_whenBlogWasDeletedSinceLastRead_shouldReturnBlogNotFound() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        MvcResult result = this.mockMvc.perform(delete("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        awaitPurge(result);
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testGetBlogById_whenPostWasAddedSinceLastRead_shouldReturnNewBodyAndEtag() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+
+        String etag = this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        CreatePostRequest request = new CreatePostRequest("title", "content", List.of(TopicsType.DEFAULT));
+        this.mockMvc.perform(post("/v1/post/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, Objects.requireNonNull(etag))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$.posts", hasSize(1)));
+
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testGetBlogs_whenIfNoneMatchIsCurrent_shouldReturnNotModified() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+
+        String etag = this.mockMvc.perform(get("/v1/blog")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get("/v1/blog")
+                        .header(HttpHeaders.IF_NONE_MATCH, Objects.requireNonNull(etag))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
     @Test
     public void testGetBlogById_whenBlogIdNotExist_shouldReturnBlogNotFound() throws Exception {
 
@@ -46,11 +249,13 @@ class BlogControllerIT extends IntegrationTestSupport {
     }
 
     @Test
-    public void testGetBlogs_whenRequestIsMade_shouldReturnBlogDtoList() throws Exception {
+    public void testGetBlogs_whenRequestIsMade_shouldReturnBlogSummaryList() throws Exception {
         User user = userRepository.save(generateUser(1));
         User user2 = userRepository.save(generateUser(2));
         Blog blog = blogRepository.save(generateBlog(user));
         Blog blog2 = blogRepository.save(generateBlog(user2));
+        Post post = postRepository.save(generatePost(blog));
+        Post post2 = postRepository.save(generatePost(blog));
 
         this.mockMvc.perform(get("/v1/blog")
                         .contentType(MediaType.APPLICATION_JSON))
@@ -58,13 +263,18 @@ class BlogControllerIT extends IntegrationTestSupport {
                 .andExpect(jsonPath("$.[*]", hasSize(2)))
                 .andExpect(jsonPath("$.[*].title", hasItem(blog.getTitle())))
                 .andExpect(jsonPath("$.[*].description", hasItem(blog.getDescription())))
-                .andExpect(jsonPath("$.[*].content", hasItem(blog.getContent())))
                 .andExpect(jsonPath("$.[*].date", hasItem(blog.getDate().toString())))
+                .andExpect(jsonPath("$.[*].username", hasItem(user.getUsername())))
                 .andExpect(jsonPath("$.[*].title", hasItem(blog2.getTitle())))
                 .andExpect(jsonPath("$.[*].description", hasItem(blog.getDescription())))
-                .andExpect(jsonPath("$.[*].content", hasItem(blog2.getContent())))
-                .andExpect(jsonPath("$.[*].date", hasItem(blog2.getDate().toString())));
-
+                .andExpect(jsonPath("$.[*].date", hasItem(blog2.getDate().toString())))
+                .andExpect(jsonPath("$.[*].username", hasItem(user2.getUsername())))
+                .andExpect(jsonPath("$.[*].postCount", containsInAnyOrder(2, 0)))
+                .andExpect(jsonPath("$.[*].content").doesNotExist())
+                .andExpect(jsonPath("$.[*].posts").doesNotExist());
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post2.getId()));
         blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
         blogRepository.deleteById(Objects.requireNonNull(blog2.getId()));
@@ -88,17 +298,24 @@ class BlogControllerIT extends IntegrationTestSupport {
     }
 
     @Test
-    public void testDeleteBlog_whenBlogIdExists_shouldDeleteBlogAndReturnConfirmationString() throws Exception {
+    public void testDeleteBlog_whenBlogIdExists_shouldHideBlogAndPurgeItWithItsPosts() throws Exception {
         User user = userRepository.save(generateUser(1));
         Blog blog = blogRepository.save(generateBlog(user));
+        List<Post> posts = postRepository.saveAll(List.of(generatePost(blog), generatePost(blog), generatePost(blog)));
+        commentRepository.save(generateComment(posts.get(0), user));
 
 
-        this.mockMvc.perform(delete("/v1/blog/" + blog.getId())
+        MvcResult result = this.mockMvc.perform(delete("/v1/blog/" + blog.getId())
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.targetType", is("BLOG")))
+                .andReturn();
 
         List<Blog> createdBlog = blogRepository.findAll();
         assertEquals(0, createdBlog.size());
+        assertEquals(0, postRepository.findAll().size());
+        // the comment, three posts in two batches and the blog
+        assertEquals(5, awaitPurge(result).getDeletedRows());
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
 
@@ -267,4 +484,166 @@ class BlogControllerIT extends IntegrationTestSupport {
         blogRepository.deleteById(Objects.requireNonNull(createdBlog.get(0).getId()));
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
+
+    @Test
+    public void testPatchBlog_whenOnlyTitleIsGiven_shouldChangeTitleAndCheckIfMatch() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+
+        statistics().clear();
+        this.mockMvc.perform(patch("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.title", is("patched")))
+                .andExpect(jsonPath("$.content", is("content")));
+        assertEquals(1, statistics().getEntityUpdateCount());
+
+        this.mockMvc.perform(patch("/v1/blog/" + blog.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"content\":\"stale\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        this.mockMvc.perform(patch("/v1/blog/" + blog.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"content\":\"fresh\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+
+        this.mockMvc.perform(patch("/v1/blog/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\" \"}"))
+                .andExpect(status().isBadRequest());
+
+        Blog patched = blogRepository.findAggregateById(Objects.requireNonNull(blog.getId())).orElseThrow();
+        assertEquals("patched", patched.getTitle());
+        assertEquals("description", patched.getDescription());
+        assertEquals("fresh", patched.getContent());
+
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetBlogById_whenPostsHaveLongThreads_shouldEmbedCommentPreviewPerPost() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Post post2 = postRepository.save(generatePost(blog));
+        for (int i = 0; i < 4; i++) {
+            commentRepository.save(generateComment(post, user));
+        }
+        commentRepository.save(generateComment(post2, user));
+
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[*].commentCount", containsInAnyOrder(4, 1)))
+                .andExpect(jsonPath("$.posts[?(@.commentCount == 4)].comments[*]", hasSize(3)))
+                .andExpect(jsonPath("$.posts[?(@.commentCount == 1)].comments[*]", hasSize(1)));
+        // the version lookup, the blog with its posts and one preview query for all of them
+        assertEquals(3, statistics().getPrepareStatementCount());
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetBlogs_whenFieldsAreGiven_shouldReturnOnlyThoseFields() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        User user2 = userRepository.save(generateUser(2));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Blog blog2 = blogRepository.save(generateBlog(user2));
+        Post post = postRepository.save(generatePost(blog));
+        Post post2 = postRepository.save(generatePost(blog));
+        statistics().clear();
+
+        this.mockMvc.perform(get("/v1/blog?fields=username,postCount"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(2)))
+                .andExpect(jsonPath("$.[0].*", hasSize(2)))
+                .andExpect(jsonPath("$.[*].username", containsInAnyOrder(user.getUsername(), user2.getUsername())))
+                .andExpect(jsonPath("$.[*].postCount", containsInAnyOrder(2, 0)))
+                .andExpect(jsonPath("$.[*].title").doesNotExist());
+
+        assertEquals(1, statistics().getPrepareStatementCount());
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post2.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog2.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user2.getId()));
+    }
+
+    @Test
+    public void testGetBlogById_whenFieldsAreGiven_shouldSkipPostsAndContent() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        statistics().clear();
+
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId() + "?fields=title,date"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$.title", is(blog.getTitle())))
+                .andExpect(jsonPath("$.date", is(blog.getDate().toString())));
+
+        // the version behind the ETag and the blog row
+        assertEquals(2, statistics().getPrepareStatementCount());
+        assertTrue(Arrays.stream(statistics().getQueries()).noneMatch(query -> query.contains(".content")));
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testUpdateAndPatchBlog_whenPostsGrow_shouldRunConstantNumberOfStatements() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        postRepository.save(generatePost(blog));
+
+        long updateStatementsForOnePost = countStatementsOfUpdateBlog(blog.getId(), "updated1");
+        long patchStatementsForOnePost = countStatementsOfPatchBlog(blog.getId(), "patched1");
+
+        for (int i = 0; i < 4; i++) {
+            postRepository.save(generatePost(blog));
+        }
+
+        long updateStatementsForFivePosts = countStatementsOfUpdateBlog(blog.getId(), "updated2");
+        long patchStatementsForFivePosts = countStatementsOfPatchBlog(blog.getId(), "patched2");
+
+        assertEquals(updateStatementsForOnePost, updateStatementsForFivePosts);
+        assertEquals(patchStatementsForOnePost, patchStatementsForFivePosts);
+        // the blog with its posts and their content, the update and the comment previews
+        assertEquals(3, updateStatementsForFivePosts);
+        assertEquals(3, patchStatementsForFivePosts);
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    private long countStatementsOfUpdateBlog(String blogId, String title) throws Exception {
+        CreateBlogRequest request = new CreateBlogRequest(title, "description", "content");
+        statistics().clear();
+        this.mockMvc.perform(put("/v1/blog/" + blogId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[*].content", everyItem(is("content"))));
+        return statistics().getPrepareStatementCount();
+    }
+
+    private long countStatementsOfPatchBlog(String blogId, String title) throws Exception {
+        statistics().clear();
+        this.mockMvc.perform(patch("/v1/blog/" + blogId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"" + title + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[*].content", everyItem(is("content"))));
+        return statistics().getPrepareStatementCount();
+    }
 }
\ No newline at end of file
@@ -1,14 +1,22 @@
 package com.folksdev.blog.controller;
 
 import com.folksdev.blog.IntegrationTestSupport;
+import com.folksdev.blog.SqlStatementRecorder;
 import com.folksdev.blog.dto.requests.CreateCommentRequest;
 import com.folksdev.blog.dto.requests.CreatePostRequest;
 import com.folksdev.blog.model.*;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -16,7 +24,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -34,8 +44,8 @@ class CommentControllerIT extends IntegrationTestSupport {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.body", is(comment.getBody())))
-                .andExpect(jsonPath("$.postTitle", is(comment.getPost().getTitle())))
-                .andExpect(jsonPath("$.username", is(comment.getUser().getUsername())));
+                .andExpect(jsonPath("$.postTitle", is(post.getTitle())))
+                .andExpect(jsonPath("$.username", is(user.getUsername())));
 
         commentRepository.deleteById(Objects.requireNonNull(comment.getId()));
         postRepository.deleteById(Objects.requireNonNull(post.getId()));
@@ -66,11 +76,11 @@ class CommentControllerIT extends IntegrationTestSupport {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.[*]", hasSize(2)))
                 .andExpect(jsonPath("$.[*].body", hasItem(comment.getBody())))
-                .andExpect(jsonPath("$.[*].postTitle", hasItem(comment.getPost().getTitle())))
-                .andExpect(jsonPath("$.[*].username", hasItem(comment.getUser().getUsername())))
+                .andExpect(jsonPath("$.[*].postTitle", hasItem(post.getTitle())))
+                .andExpect(jsonPath("$.[*].username", hasItem(user.getUsername())))
                 .andExpect(jsonPath("$.[*].body", hasItem(comment2.getBody())))
-                .andExpect(jsonPath("$.[*].postTitle", hasItem(comment2.getPost().getTitle())))
-                .andExpect(jsonPath("$.[*].username", hasItem(comment2.getUser().getUsername())));
+                .andExpect(jsonPath("$.[*].postTitle", hasItem(post.getTitle())))
+                .andExpect(jsonPath("$.[*].username", hasItem(user2.getUsername())));
 
         commentRepository.deleteById(Objects.requireNonNull(comment2.getId()));
         commentRepository.deleteById(Objects.requireNonNull(comment.getId()));
@@ -80,6 +90,64 @@ class CommentControllerIT extends IntegrationTestSupport {
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
 
+    @Test
+    public void testGetComments_whenThreadGrows_shouldRunVersionLookupAndSingleQuery() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        for (int i = 0; i < 5; i++) {
+            commentRepository.save(generateComment(post, userRepository.save(generateUser(10 + i))));
+        }
+
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/comment/post/" + post.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(5)));
+
+        // the ETag version lookup plus the projection query
+        assertEquals(2, statistics().getPrepareStatementCount());
+
+        commentRepository.deleteAll();
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testGetComments_whenIfNoneMatchIsCurrent_shouldReturnNotModified() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Comment comment = commentRepository.save(generateComment(post, user));
+
+        String etag = this.mockMvc.perform(get("/v1/comment/post/" + post.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/comment/post/" + post.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, Objects.requireNonNull(etag))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+        assertEquals(1, statistics().getPrepareStatementCount());
+
+        commentRepository.deleteById(Objects.requireNonNull(comment.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetComments_whenPostIdNotExist_shouldReturnPostNotFound() throws Exception {
+
+        this.mockMvc.perform(get("/v1/comment/post/" + "2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+    }
+
     @Test
     public void testCreateComment_whenCreateCommentRequestIsValid_shouldCreateCommentAndReturnCommentDto() throws Exception {
         User user = userRepository.save(generateUser(1));
@@ -107,6 +175,56 @@ class CommentControllerIT extends IntegrationTestSupport {
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
 
     }
+    @Test
+    public void testCreateComment_whenRespondAsyncIsPreferred_shouldReturn202AndWriteCommentLater() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        CreateCommentRequest request = new CreateCommentRequest("body");
+
+        String response = this.mockMvc.perform(post("/v1/comment/"+post.getId()+"/"+user.getId())
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.body", is("body")))
+                .andReturn().getResponse().getContentAsString();
+        String commentId = mapper.readTree(response).get("id").asText();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (commentRepository.findById(commentId).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        this.mockMvc.perform(get("/v1/comment/" + commentId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.body", is("body")))
+                .andExpect(jsonPath("$.username", is("username1")));
+        assertEquals(1L, postRepository.findVersionById(post.getId()).orElseThrow());
+
+        commentRepository.deleteById(commentId);
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testCreateComment_whenRespondAsyncIsPreferredAndBodyIsBlank_shouldReturn400Error() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        this.mockMvc.perform(post("/v1/comment/"+post.getId()+"/"+user.getId())
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(new CreateCommentRequest(" "))))
+                .andExpect(status().isBadRequest());
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
     @Test
     public void testCreateComment_whenPostIdNotExist_shouldReturnPostNotFound() throws Exception {
         User user = userRepository.save(generateUser(1)) ;
@@ -170,8 +288,8 @@ class CommentControllerIT extends IntegrationTestSupport {
                         .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.body", is(request.getBody())))
-                .andExpect(jsonPath("$.postTitle", is(comment.getPost().getTitle())))
-                .andExpect(jsonPath("$.username", is(comment.getUser().getUsername())));
+                .andExpect(jsonPath("$.postTitle", is(post.getTitle())))
+                .andExpect(jsonPath("$.username", is(user.getUsername())));
 
         List<Post> createdPost = postRepository.findAll();
         assertEquals(1, createdPost.size());
@@ -222,4 +340,107 @@ class CommentControllerIT extends IntegrationTestSupport {
         blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
+
+    @Test
+    public void testPatchComment_whenBodyIsGiven_shouldChangeBodyAndBumpPostVersion() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Comment comment = commentRepository.save(generateComment(post, user));
+
+        this.mockMvc.perform(patch("/v1/comment/" + comment.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"body\":\"patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.body", is("patched")));
+
+        assertEquals(1L, postRepository.findVersionById(Objects.requireNonNull(post.getId())).orElseThrow());
+
+        commentRepository.deleteById(Objects.requireNonNull(comment.getId()));
+        postRepository.deleteById(post.getId());
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testExportComments_whenPostHasComments_shouldStreamOneCommentPerLine() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        commentRepository.saveAll(List.of(generateComment(post, user), generateComment(post, user)));
+
+        MvcResult started = this.mockMvc.perform(get("/v1/comment/post/" + post.getId() + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = this.mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("body", JsonPath.read(lines[1], "$.body"));
+        assertEquals(post.getTitle(), JsonPath.read(lines[1], "$.postTitle"));
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testExportComments_whenPostIdNotExist_shouldReturnPostNotFound() throws Exception {
+        this.mockMvc.perform(get("/v1/comment/post/nope/export"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetComments_whenMoreCommentsThanPageSize_shouldFollowNextCursorWithoutRepeats() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        for (int i = 0; i < 5; i++) {
+            commentRepository.save(new Comment("body" + i, post, user));
+        }
+
+        Set<String> bodies = new HashSet<>();
+        String url = "/v1/comment/post/" + post.getId() + "?size=2";
+        int pages = 0;
+        while (url != null) {
+            MockHttpServletResponse response = this.mockMvc.perform(get(url))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse();
+            List<String> page = JsonPath.read(response.getContentAsString(), "$[*].body");
+            bodies.addAll(page);
+            pages++;
+            String link = response.getHeader(HttpHeaders.LINK);
+            url = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        }
+
+        assertEquals(3, pages);
+        assertEquals(5, bodies.size());
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testCreateComment_whenPostIsLoadedToAttachTheComment_shouldNotSelectPostContent() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        SqlStatementRecorder.start();
+        this.mockMvc.perform(post("/v1/comment/" + post.getId() + "/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new CreateCommentRequest("body"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.postTitle", is(post.getTitle())));
+        List<String> selects = SqlStatementRecorder.stop().stream()
+                .filter(sql -> sql.startsWith("select"))
+                .collect(Collectors.toList());
+
+        assertTrue(selects.stream().anyMatch(sql -> sql.contains(" from post ")));
+        assertTrue(selects.stream().noneMatch(sql -> sql.contains("content")), selects::toString);
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
 }
\ No newline at end of file
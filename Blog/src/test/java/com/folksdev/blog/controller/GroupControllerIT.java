@@ -1,13 +1,17 @@
 package com.folksdev.blog.controller;
 
 import com.folksdev.blog.IntegrationTestSupport;
+import com.folksdev.blog.dto.requests.AddGroupMembersRequest;
 import com.folksdev.blog.dto.requests.CreateGroupRequest;
 import com.folksdev.blog.model.Group;
 import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +36,63 @@ class GroupControllerIT extends IntegrationTestSupport {
         groupRepository.deleteById(Objects.requireNonNull(group.getId()));
     }
 
+    @Test
+    public void testGetGroups_whenGroupCountGrows_shouldRunConstantNumberOfStatements() throws Exception {
+        List<User> members = userRepository.saveAll(List.of(generateUser(1), generateUser(2), generateUser(3)));
+
+        long statementsForTenGroups = countStatementsOfGetGroups(members, 10);
+        long statementsForThousandGroups = countStatementsOfGetGroups(members, 1000);
+
+        assertEquals(statementsForTenGroups, statementsForThousandGroups);
+        assertEquals(2, statementsForThousandGroups);
+
+        userRepository.deleteAll(members);
+    }
+
+    private long countStatementsOfGetGroups(List<User> members, int groupCount) throws Exception {
+        List<Group> groups = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new Group(null, "name" + i, "description", generateLocalDate(),
+                    List.of(GroupsType.DEFAULT, GroupsType.GAMING),
+                    Set.of(members.get(i % members.size()), members.get((i + 1) % members.size()))));
+        }
+        groups = groupRepository.saveAll(groups);
+
+        statistics().clear();
+        this.mockMvc.perform(get("/v1/group")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(groupCount)))
+                .andExpect(jsonPath("$.[0].users", hasSize(2)))
+                .andExpect(jsonPath("$.[0].groupTypes", hasSize(2)));
+        long statements = statistics().getPrepareStatementCount();
+
+        groupRepository.deleteAll(groups);
+        return statements;
+    }
+
+    @Test
+    public void testGetGroupsByType_whenGroupsHaveMixedTypes_shouldReturnOnlyGroupsWithType() throws Exception {
+        Group gaming = groupRepository.save(new Group("name1", "description",
+                List.of(GroupsType.GAMING, GroupsType.NEWS)));
+        Group news = groupRepository.save(new Group("name2", "description", List.of(GroupsType.NEWS)));
+
+        this.mockMvc.perform(get("/v1/group/type/" + GroupsType.GAMING)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(1)))
+                .andExpect(jsonPath("$.[0].name", is(gaming.getName())))
+                .andExpect(jsonPath("$.[0].groupTypes", containsInAnyOrder("GAMING", "NEWS")));
+
+        this.mockMvc.perform(get("/v1/group/type/" + GroupsType.NEWS)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(2)));
+
+        groupRepository.deleteById(Objects.requireNonNull(gaming.getId()));
+        groupRepository.deleteById(Objects.requireNonNull(news.getId()));
+    }
+
     @Test
     public void testGetGroupById_whenGroupIdNotExist_shouldReturnGroupNotFound() throws Exception {
 
@@ -203,4 +264,102 @@ class GroupControllerIT extends IntegrationTestSupport {
         List<Group> createdGroup = groupRepository.findAll();
         assertEquals(0, createdGroup.size());
     }
+
+    @Test
+    public void testMembership_whenUserIsInManyGroups_shouldRunSameStatementsAsForUserInOneGroup() throws Exception {
+        List<User> users = userRepository.saveAll(List.of(generateUser(1), generateUser(2)));
+        User fewGroups = users.get(0);
+        User manyGroups = users.get(1);
+        List<Group> existing = new ArrayList<>();
+        existing.add(new Group(null, "name0", "description", generateLocalDate(), List.of(GroupsType.DEFAULT),
+                Set.of(fewGroups, manyGroups)));
+        for (int i = 1; i < 100; i++) {
+            existing.add(new Group(null, "name" + i, "description", generateLocalDate(), List.of(GroupsType.DEFAULT),
+                    Set.of(manyGroups)));
+        }
+        existing = groupRepository.saveAll(existing);
+        Group group = groupRepository.save(generateGroup(100));
+
+        for (User user : users) {
+            statistics().clear();
+            this.mockMvc.perform(put("/v1/group/" + group.getId() + "/members/" + user.getId()))
+                    .andExpect(status().isNoContent());
+            // the group comes from the second level cache, only the insert reaches the database
+            assertEquals(1, statistics().getPrepareStatementCount());
+
+            statistics().clear();
+            this.mockMvc.perform(put("/v1/group/" + group.getId() + "/members/" + user.getId()))
+                    .andExpect(status().isNoContent());
+            // a no-op insert is followed by the lookup telling a member from an unknown user
+            assertEquals(2, statistics().getPrepareStatementCount());
+        }
+        this.mockMvc.perform(get("/v1/group/" + group.getId()))
+                .andExpect(jsonPath("$.users", hasSize(2)));
+
+        for (User user : users) {
+            statistics().clear();
+            this.mockMvc.perform(delete("/v1/group/" + group.getId() + "/members/" + user.getId()))
+                    .andExpect(status().isNoContent());
+            assertEquals(1, statistics().getPrepareStatementCount());
+        }
+        this.mockMvc.perform(get("/v1/group/" + group.getId()))
+                .andExpect(jsonPath("$.users").doesNotExist());
+
+        groupRepository.deleteAll(existing);
+        groupRepository.delete(group);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    public void testAddMembers_whenSomeAreMembersOrUnknown_shouldInsertOnlyMissingRowsInOneStatement() throws Exception {
+        List<User> users = userRepository.saveAll(List.of(generateUser(1), generateUser(2), generateUser(3)));
+        Group group = groupRepository.save(new Group(null, "name1", "description", generateLocalDate(),
+                List.of(GroupsType.DEFAULT), Set.of(users.get(0))));
+        AddGroupMembersRequest request = new AddGroupMembersRequest(List.of(users.get(0).getId(),
+                users.get(1).getId(), users.get(2).getId(), users.get(2).getId(), "unknownUserId"));
+
+        statistics().clear();
+        this.mockMvc.perform(post("/v1/group/" + group.getId() + "/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.added", is(2)));
+        assertEquals(1, statistics().getPrepareStatementCount());
+
+        this.mockMvc.perform(get("/v1/group/" + group.getId()))
+                .andExpect(jsonPath("$.users", hasSize(3)));
+
+        groupRepository.delete(group);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    public void testAddMember_whenUserIdNotExists_shouldReturn404NotFound() throws Exception {
+        Group group = groupRepository.save(generateGroup(1));
+
+        this.mockMvc.perform(put("/v1/group/" + group.getId() + "/members/unknownUserId"))
+                .andExpect(status().isNotFound());
+
+        groupRepository.delete(group);
+    }
+
+    @Test
+    public void testGetGroupsByType_whenFieldsAreGiven_shouldReturnOnlyThoseFieldsOfMatchingGroups() throws Exception {
+        Group group = groupRepository.save(new Group("gaming", "description", List.of(GroupsType.GAMING)));
+        Group other = groupRepository.save(generateGroup(2));
+
+        this.mockMvc.perform(get("/v1/group/type/" + GroupsType.GAMING + "?fields=name,groupTypes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(1)))
+                .andExpect(jsonPath("$.[0].*", hasSize(2)))
+                .andExpect(jsonPath("$.[0].name", is("gaming")))
+                .andExpect(jsonPath("$.[0].groupTypes", contains("GAMING")));
+
+        this.mockMvc.perform(get("/v1/group/" + other.getId() + "?fields=id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(other.getId())));
+
+        groupRepository.deleteById(Objects.requireNonNull(group.getId()));
+        groupRepository.deleteById(Objects.requireNonNull(other.getId()));
+    }
 }
\ No newline at end of file
@@ -1,22 +1,41 @@
 package com.folksdev.blog.controller;
 
 import com.folksdev.blog.IntegrationTestSupport;
+import com.folksdev.blog.SqlStatementRecorder;
+import com.folksdev.blog.dto.requests.CreateCommentRequest;
 import com.folksdev.blog.dto.requests.CreatePostRequest;
 import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Comment;
 import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.PurgeJob;
+import com.folksdev.blog.model.PurgeStatus;
+import com.folksdev.blog.model.PurgeTarget;
 import com.folksdev.blog.model.TopicsType;
 import com.folksdev.blog.model.User;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class PostControllerIT extends IntegrationTestSupport {
@@ -32,8 +51,42 @@ class PostControllerIT extends IntegrationTestSupport {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.title", is(post.getTitle())))
                 .andExpect(jsonPath("$.content", is(post.getContent())))
-                .andExpect(jsonPath("$.blogTitle", is(post.getBlog().getTitle())))
-                .andExpect(jsonPath("$.userName", is(post.getBlog().getUser().getUsername())));
+                .andExpect(jsonPath("$.blogTitle", is(blog.getTitle())))
+                .andExpect(jsonPath("$.userName", is(user.getUsername())));
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPostById_whenCommentWasAddedSinceLastRead_shouldReturnNewEtag() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        String etag = this.mockMvc.perform(get("/v1/post/" + post.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get("/v1/post/" + post.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, Objects.requireNonNull(etag))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+
+        this.mockMvc.perform(post("/v1/comment/" + post.getId() + "/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().writeValueAsString(new CreateCommentRequest("body"))))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/v1/post/" + post.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$.comments", hasSize(1)));
+
+        commentRepository.deleteAll();
         postRepository.deleteById(Objects.requireNonNull(post.getId()));
         blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
@@ -63,12 +116,12 @@ class PostControllerIT extends IntegrationTestSupport {
                 .andExpect(jsonPath("$.[*]", hasSize(2)))
                 .andExpect(jsonPath("$.[*].title", hasItem(post.getTitle())))
                 .andExpect(jsonPath("$.[*].content", hasItem(post.getContent())))
-                .andExpect(jsonPath("$.[*].blogTitle", hasItem(post.getBlog().getTitle())))
-                .andExpect(jsonPath("$.[*].userName", hasItem(post.getBlog().getUser().getUsername())))
+                .andExpect(jsonPath("$.[*].blogTitle", hasItem(blog.getTitle())))
+                .andExpect(jsonPath("$.[*].userName", hasItem(user.getUsername())))
                 .andExpect(jsonPath("$.[*].title", hasItem(post2.getTitle())))
                 .andExpect(jsonPath("$.[*].content", hasItem(post2.getContent())))
-                .andExpect(jsonPath("$.[*].blogTitle", hasItem(post2.getBlog().getTitle())))
-                .andExpect(jsonPath("$.[*].userName", hasItem(post2.getBlog().getUser().getUsername())));
+                .andExpect(jsonPath("$.[*].blogTitle", hasItem(blog2.getTitle())))
+                .andExpect(jsonPath("$.[*].userName", hasItem(user2.getUsername())));
 
         postRepository.deleteById(Objects.requireNonNull(post.getId()));
         postRepository.deleteById(Objects.requireNonNull(post2.getId()));
@@ -92,12 +145,12 @@ class PostControllerIT extends IntegrationTestSupport {
                 .andExpect(jsonPath("$.[*]", hasSize(2)))
                 .andExpect(jsonPath("$.[*].title", hasItem(post.getTitle())))
                 .andExpect(jsonPath("$.[*].content", hasItem(post.getContent())))
-                .andExpect(jsonPath("$.[*].blogTitle", hasItem(post.getBlog().getTitle())))
-                .andExpect(jsonPath("$.[*].userName", hasItem(post.getBlog().getUser().getUsername())))
+                .andExpect(jsonPath("$.[*].blogTitle", hasItem(blog.getTitle())))
+                .andExpect(jsonPath("$.[*].userName", hasItem(user.getUsername())))
                 .andExpect(jsonPath("$.[*].title", hasItem(post2.getTitle())))
                 .andExpect(jsonPath("$.[*].content", hasItem(post2.getContent())))
-                .andExpect(jsonPath("$.[*].blogTitle", hasItem(post2.getBlog().getTitle())))
-                .andExpect(jsonPath("$.[*].userName", hasItem(post2.getBlog().getUser().getUsername())));
+                .andExpect(jsonPath("$.[*].blogTitle", hasItem(blog.getTitle())))
+                .andExpect(jsonPath("$.[*].userName", hasItem(user.getUsername())));
 
         postRepository.deleteById(Objects.requireNonNull(post.getId()));
         postRepository.deleteById(Objects.requireNonNull(post2.getId()));
@@ -106,6 +159,81 @@ class PostControllerIT extends IntegrationTestSupport {
         userRepository.deleteById(Objects.requireNonNull(user2.getId()));
     }
 
+    @Test
+    public void testGetPosts_whenMorePostsThanPageSize_shouldFollowNextCursorUntilLastPage() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Post post2 = postRepository.save(generatePost(blog));
+        Post post3 = postRepository.save(generatePost(blog));
+
+        String next = this.mockMvc.perform(get("/v1/post/blog/" + blog.getId() + "?size=2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(2)))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        String nextUrl = Objects.requireNonNull(next).substring(next.indexOf('<') + 1, next.indexOf('>'));
+        this.mockMvc.perform(get(nextUrl)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(1)))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post2.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post3.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPostsByTopic_whenPostsHaveMixedTopics_shouldPageThroughPostsWithTopic() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post tech = postRepository.save(new Post("tech", "content", List.of(TopicsType.TECH), blog));
+        Post techNews = postRepository.save(new Post("techNews", "content",
+                List.of(TopicsType.NEWS, TopicsType.TECH), blog));
+        Post news = postRepository.save(new Post("news", "content", List.of(TopicsType.NEWS), blog));
+
+        String next = this.mockMvc.perform(get("/v1/post/topic/" + TopicsType.TECH + "?size=1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(1)))
+                .andExpect(jsonPath("$.[0].topicsTypes", hasItem("TECH")))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        String nextUrl = Objects.requireNonNull(next).substring(next.indexOf('<') + 1, next.indexOf('>'));
+        this.mockMvc.perform(get(nextUrl)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(1)))
+                .andExpect(jsonPath("$.[0].topicsTypes", hasItem("TECH")))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        this.mockMvc.perform(get("/v1/post/topic/" + TopicsType.NEWS)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].title", containsInAnyOrder("techNews", "news")));
+
+        postRepository.deleteById(Objects.requireNonNull(tech.getId()));
+        postRepository.deleteById(Objects.requireNonNull(techNews.getId()));
+        postRepository.deleteById(Objects.requireNonNull(news.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPosts_whenCursorIsMalformed_shouldReturnBadRequest() throws Exception {
+
+        this.mockMvc.perform(get("/v1/post?cursor=" + "not-a-cursor")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+    }
+
     @Test
     public void testGetPostsByBlogId_whenBlogIdNotExist_shouldReturnBlogNotFound() throws Exception {
 
@@ -229,19 +357,364 @@ class PostControllerIT extends IntegrationTestSupport {
     }
 
     @Test
-    public void testDeletePost_whenPostIdExists_shouldDeletePostAndReturnConfirmationString() throws Exception {
+    public void testDeletePost_whenPostIdExists_shouldHidePostAndPurgeItWithItsComments() throws Exception {
         User user = userRepository.save(generateUser(1));
         Blog blog = blogRepository.save(generateBlog(user));
         Post post = postRepository.save(generatePost(blog));
+        List<Comment> comments = commentRepository.saveAll(List.of(generateComment(post, user), generateComment(post, user)));
 
 
-        this.mockMvc.perform(delete("/v1/post/" + post.getId())
+        MvcResult result = this.mockMvc.perform(delete("/v1/post/" + post.getId())
                         .contentType(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.targetType", is("POST")))
+                .andReturn();
 
         List<Post> createdPost = postRepository.findAll();
         assertEquals(0, createdPost.size());
+        this.mockMvc.perform(get("/v1/comment/" + comments.get(0).getId())).andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/v1/comment/post/" + post.getId())).andExpect(status().isNotFound());
+        assertEquals(3, awaitPurge(result).getDeletedRows());
         blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
         userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
+
+    @Test
+    public void testDeletePost_whenOlderPurgeJobKeepsFailing_shouldGiveItUpAndPurgePost() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        PurgeJob broken = new PurgeJob(PurgeTarget.POST, "missingPost");
+        broken.setStep(99);
+        broken.setCreatedAt(LocalDateTime.now().minusMinutes(1));
+        broken = purgeJobRepository.save(broken);
+
+
+        MvcResult result = this.mockMvc.perform(delete("/v1/post/" + post.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        assertEquals(1, awaitPurge(result).getDeletedRows());
+        PurgeJob failed = purgeJobRepository.findById(Objects.requireNonNull(broken.getId())).orElseThrow();
+        assertEquals(PurgeStatus.FAILED, failed.getStatus());
+        assertEquals(3, failed.getAttempts());
+        purgeJobRepository.delete(failed);
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testImportPosts_whenArrayHoldsValidAndInvalidPosts_shouldBatchValidOnesAndReportEachItem() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 250; i++) {
+            body.append(mapper.writeValueAsString(
+                    new CreatePostRequest("title" + i, "content", List.of(TopicsType.TECH)))).append(',');
+        }
+        body.append("{\"title\":\"\",\"content\":\"content\"},{\"content\":\"no title\"}]");
+
+        statistics().clear();
+        this.mockMvc.perform(post("/v1/post/" + blog.getId() + "/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(252)))
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[0].id", notNullValue()))
+                .andExpect(jsonPath("$[249].status", is("CREATED")))
+                .andExpect(jsonPath("$[250].status", is("INVALID")))
+                .andExpect(jsonPath("$[250].errors.title", notNullValue()))
+                .andExpect(jsonPath("$[251].index", is(251)))
+                .andExpect(jsonPath("$[251].status", is("INVALID")));
+
+        assertEquals(250, statistics().getEntityInsertCount());
+        // a blog lookup, then per chunk of 100 one version bump and one insert batch per 100 rows
+        assertEquals(7, statistics().getPrepareStatementCount());
+        assertEquals(250, postRepository.count());
+        assertEquals(3, blogRepository.findVersionById(blog.getId()).orElseThrow());
+
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testImportPosts_whenJsonIsCutOff_shouldKeepCommittedChunksAndReturn400Error() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 150; i++) {
+            body.append(mapper.writeValueAsString(
+                    new CreatePostRequest("title" + i, "content", List.of(TopicsType.DEFAULT)))).append(',');
+        }
+        body.append("{\"title\":\"cut");
+
+        this.mockMvc.perform(post("/v1/post/" + blog.getId() + "/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Malformed JSON after 150 posts, 100 of them were imported")));
+
+        assertEquals(100, postRepository.count());
+
+        postRepository.deleteAll();
+        blogRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testImportPosts_whenBlogIdNotExists_shouldReturn404NotFound() throws Exception {
+        this.mockMvc.perform(post("/v1/post/unknownBlogId/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testPatchPost_whenIfMatchIsThePostDetailEtag_shouldReturnTheNewPostDetailEtag() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        String etag = this.mockMvc.perform(get("/v1/post/" + post.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String patched = this.mockMvc.perform(patch("/v1/post/" + post.getId())
+                        .header(HttpHeaders.IF_MATCH, Objects.requireNonNull(etag))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"content\":\"patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1.1\""))
+                .andExpect(jsonPath("$.title", is("title")))
+                .andExpect(jsonPath("$.content", is("patched")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get("/v1/post/" + post.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, Objects.requireNonNull(patched)))
+                .andExpect(status().isNotModified());
+        this.mockMvc.perform(patch("/v1/post/" + post.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"stale\"}"))
+                .andExpect(status().isPreconditionFailed());
+        // the post version alone no longer matches, the blog may have changed since
+        this.mockMvc.perform(patch("/v1/post/" + post.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"1.0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"stale\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        assertEquals(1L, blogRepository.findVersionById(Objects.requireNonNull(blog.getId())).orElseThrow());
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(blog.getId());
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testPatchPost_whenOnlyTitleIsGiven_shouldReadContentWithThePost() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        SqlStatementRecorder.start();
+        this.mockMvc.perform(patch("/v1/post/" + post.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("content")));
+        List<String> postSelects = SqlStatementRecorder.stop().stream()
+                .filter(sql -> sql.startsWith("select post"))
+                .collect(Collectors.toList());
+
+        // the post with its content, no lazy select of the content on its own
+        assertEquals(1, postSelects.size(), postSelects::toString);
+        assertTrue(postSelects.get(0).contains("content"), postSelects::toString);
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testExportPosts_shouldHaveAnHourBeforeTheAsyncRequestTimesOut() throws Exception {
+        MvcResult started = this.mockMvc.perform(get("/v1/post/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertEquals(Duration.ofHours(1).toMillis(), started.getRequest().getAsyncContext().getTimeout());
+        this.mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void testExportPosts_whenPostsExist_shouldStreamOnePostPerLineFromOneQuery() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        List<Post> posts = postRepository.saveAll(List.of(generatePost(blog), generatePost(blog), generatePost(blog)));
+
+        statistics().clear();
+        MvcResult started = this.mockMvc.perform(get("/v1/post/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = this.mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("title", JsonPath.read(lines[0], "$.title"));
+        assertEquals(user.getUsername(), JsonPath.read(lines[2], "$.userName"));
+        assertEquals(1, statistics().getPrepareStatementCount());
+
+        postRepository.deleteAll(posts);
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testExportPosts_whenClientAcceptsGzip_shouldCompressTheLines() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+
+        MvcResult started = this.mockMvc.perform(get("/v1/post/export")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse response = this.mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(body.endsWith("\n"));
+            assertEquals(blog.getTitle(), JsonPath.read(body.trim(), "$.blogTitle"));
+        }
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPostById_whenThreadIsLong_shouldEmbedOnlyLatestCommentsAndTheirCount() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        for (int i = 0; i < 5; i++) {
+            commentRepository.save(generateComment(post, user));
+        }
+
+        this.mockMvc.perform(get("/v1/post/" + post.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.comments", hasSize(3)))
+                .andExpect(jsonPath("$.comments[0].username", is(user.getUsername())))
+                .andExpect(jsonPath("$.commentCount", is(5)));
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPosts_whenFieldsAreGiven_shouldSelectOnlyThoseColumnsAndKeepPaging() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Post post2 = postRepository.save(generatePost(blog));
+        Post post3 = postRepository.save(generatePost(blog));
+        statistics().clear();
+        SqlStatementRecorder.start();
+
+        String next = this.mockMvc.perform(get("/v1/post/blog/" + blog.getId() + "?fields=title,date&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(2)))
+                .andExpect(jsonPath("$.[0].*", hasSize(2)))
+                .andExpect(jsonPath("$.[0].title", is(post.getTitle())))
+                .andExpect(jsonPath("$.[0].date").exists())
+                .andExpect(jsonPath("$.[*].content").doesNotExist())
+                .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        List<String> statements = SqlStatementRecorder.stop();
+
+        // the blog existence check and the page itself, neither reads a content column
+        assertEquals(2, statistics().getPrepareStatementCount());
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("content")), statements::toString);
+
+        String nextUrl = Objects.requireNonNull(next).substring(next.indexOf('<') + 1, next.indexOf('>'));
+        this.mockMvc.perform(get(nextUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*]", hasSize(1)))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post2.getId()));
+        postRepository.deleteById(Objects.requireNonNull(post3.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPostById_whenFieldsNameCommentsAndOwner_shouldJoinOwnerAndLoadPreview() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(new Post("tech", "content", List.of(TopicsType.TECH), blog));
+        for (int i = 0; i < 5; i++) {
+            commentRepository.save(generateComment(post, user));
+        }
+
+        this.mockMvc.perform(get("/v1/post/" + post.getId() + "?fields=userName,topicsTypes,commentCount,comments"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.*", hasSize(4)))
+                .andExpect(jsonPath("$.userName", is(user.getUsername())))
+                .andExpect(jsonPath("$.topicsTypes", contains("TECH")))
+                .andExpect(jsonPath("$.commentCount", is(5)))
+                .andExpect(jsonPath("$.comments", hasSize(3)));
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+
+    @Test
+    public void testGetPosts_whenFieldIsUnknown_shouldReturnBadRequest() throws Exception {
+
+        this.mockMvc.perform(get("/v1/post?fields=title,secret"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("secret")));
+
+    }
+
+    @Test
+    public void testGetPostById_whenFieldsAreGivenButPostIdNotExist_shouldReturnPostNotFound() throws Exception {
+
+        this.mockMvc.perform(get("/v1/post/" + "2" + "?fields=title"))
+                .andExpect(status().isNotFound());
+
+    }
+
+    @Test
+    public void testCreatePost_whenBlogIsLoadedToAttachThePost_shouldNotSelectBlogContent() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        CreatePostRequest request = new CreatePostRequest("title", "content", List.of(TopicsType.DEFAULT));
+
+        SqlStatementRecorder.start();
+        this.mockMvc.perform(post("/v1/post/" + blog.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("content")));
+        List<String> selects = SqlStatementRecorder.stop().stream()
+                .filter(sql -> sql.startsWith("select"))
+                .collect(Collectors.toList());
+
+        assertTrue(selects.stream().anyMatch(sql -> sql.contains(" from blog ")));
+        assertTrue(selects.stream().noneMatch(sql -> sql.contains("content")), selects::toString);
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
 }
\ No newline at end of file
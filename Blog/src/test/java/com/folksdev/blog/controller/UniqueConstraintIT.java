@@ -0,0 +1,133 @@
+package com.folksdev.blog.controller;
+
+import com.folksdev.blog.IntegrationTestSupport;
+import com.folksdev.blog.dto.requests.CreateBlogRequest;
+import com.folksdev.blog.dto.requests.CreateGroupRequest;
+import com.folksdev.blog.dto.requests.CreateUserRequest;
+import com.folksdev.blog.model.Gender;
+import com.folksdev.blog.model.Group;
+import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.User;
+import com.folksdev.blog.service.UserUniquenessFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = "blog.uniqueness-check=CONSTRAINT")
+class UniqueConstraintIT extends IntegrationTestSupport {
+
+    @Autowired
+    private ObjectProvider<UserUniquenessFilter> userUniquenessFilter;
+
+    @AfterEach
+    void cleanUp() {
+        blogRepository.deleteAll();
+        groupRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testCreateUser_whenSameUsernameIsSignedUpConcurrently_shouldCreateExactlyOneUser() throws Exception {
+        int signups = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(signups);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (int i = 0; i < signups; i++) {
+                CreateUserRequest request = new CreateUserRequest(
+                        "name", "surname", "contested", "contested" + i + "@email.com", "1999-01-25", Gender.UNKNOWN);
+                String body = mapper.writeValueAsString(request);
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return this.mockMvc.perform(post("/v1/user")
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content(body))
+                            .andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            int conflicts = 0;
+            for (Future<Integer> status : statuses) {
+                int code = status.get(30, TimeUnit.SECONDS);
+                if (code == 200) {
+                    created++;
+                } else if (code == 409) {
+                    conflicts++;
+                }
+            }
+            assertEquals(1, created);
+            assertEquals(signups - 1, conflicts);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<User> users = userRepository.findAll();
+        assertEquals(1, users.size());
+        assertEquals("contested", users.get(0).getUsername());
+    }
+
+    @Test
+    public void testContext_whenUniquenessIsLeftToConstraint_shouldNotBuildUserUniquenessFilter() {
+        assertNull(userUniquenessFilter.getIfAvailable());
+    }
+
+    @Test
+    public void testCreateUser_whenEmailExists_shouldInsertOnceAndReturn409Error() throws Exception {
+        userRepository.save(generateUser(1));
+        CreateUserRequest request = new CreateUserRequest(
+                "name", "surname", "otherUsername", "email1@email.com", "1999-01-25", Gender.UNKNOWN);
+
+        statistics().clear();
+        this.mockMvc.perform(post("/v1/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(is("Username and/or Email already exists!!")));
+
+        assertEquals(1, statistics().getPrepareStatementCount());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    public void testCreateBlog_whenUserAlreadyHasBlog_shouldReturn409Error() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        blogRepository.save(generateBlog(user));
+
+        this.mockMvc.perform(post("/v1/blog/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new CreateBlogRequest("title", "description", "content"))))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(is("A blog already exists for this user!!")));
+
+        assertEquals(1, blogRepository.count());
+    }
+
+    @Test
+    public void testCreateGroup_whenNameIsTaken_shouldReturn409Error() throws Exception {
+        Group group = groupRepository.save(generateGroup(1));
+
+        this.mockMvc.perform(post("/v1/group")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(
+                                new CreateGroupRequest(group.getName(), "description", List.of(GroupsType.DEFAULT)))))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(is("This group name is already taken!")));
+
+        assertEquals(1, groupRepository.count());
+    }
+}
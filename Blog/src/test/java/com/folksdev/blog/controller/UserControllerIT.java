@@ -3,14 +3,22 @@ package com.folksdev.blog.controller;
 import com.folksdev.blog.IntegrationTestSupport;
 import com.folksdev.blog.dto.requests.CreateUserRequest;
 import com.folksdev.blog.dto.requests.UpdateUserRequest;
+import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Comment;
 import com.folksdev.blog.model.Gender;
 import com.folksdev.blog.model.Group;
+import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.PurgeJob;
 import com.folksdev.blog.model.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -92,6 +100,100 @@ class UserControllerIT extends IntegrationTestSupport {
         userRepository.deleteById(Objects.requireNonNull(createdUser.get(0).getId()));
     }
 
+    @Test
+    public void testCreateUser_whenUsernameAndEmailWereNeverStored_shouldInsertWithoutUniquenessQuery() throws Exception {
+
+        CreateUserRequest request = new CreateUserRequest(
+                "name",
+                "surname",
+                "neverStoredUsername",
+                "neverStored@email.com",
+                "1999-01-25",
+                Gender.UNKNOWN
+        );
+
+        statistics().clear();
+        this.mockMvc.perform(post("/v1/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
+                .andExpect(status().isOk());
+        assertEquals(1, statistics().getPrepareStatementCount());
+
+        this.mockMvc.perform(post("/v1/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
+                .andExpect(status().isConflict());
+
+        List<User> createdUser = userRepository.findAll();
+        assertEquals(1, createdUser.size());
+        userRepository.deleteById(Objects.requireNonNull(createdUser.get(0).getId()));
+    }
+
+    @Test
+    public void testImportUsers_whenRowsAreValidInvalidOrConflicting_shouldImportValidRowsAndReportTheOthers() throws Exception {
+        userRepository.save(generateUser(1));
+        String csv = "name,surname,username,email,dateOfBirth,gender\n"
+                + "name,surname,imported1,imported1@email.com,1999-01-25,MALE\n"
+                + "name,surname,username1,imported2@email.com,1999-01-25,MALE\n"
+                + "name,surname,imported3,not-an-email,1999-01-25,MALE\n"
+                + "name,surname,imported1,imported4@email.com,1999-01-25,MALE\n"
+                + "\"name, quoted\",surname,imported5,imported5@email.com,1999-01-25,female\n"
+                + "name,surname,imported6,imported6@email.com,25.01.1999,MALE\n";
+
+        this.mockMvc.perform(post("/v1/user/bulk")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.rejected[*].index", contains(1, 2, 3, 5)))
+                .andExpect(jsonPath("$.rejected[*].status", contains("CONFLICT", "INVALID", "CONFLICT", "INVALID")))
+                .andExpect(jsonPath("$.rejected[0].errors.username", is("is already taken")))
+                .andExpect(jsonPath("$.rejected[0].errors.email").doesNotExist())
+                .andExpect(jsonPath("$.rejected[1].errors.email").exists())
+                .andExpect(jsonPath("$.rejected[2].errors.username", is("is already taken")))
+                .andExpect(jsonPath("$.rejected[3].errors.dateOfBirth").exists());
+
+        List<User> users = userRepository.findAll();
+        assertEquals(3, users.size());
+        User quoted = users.stream().filter(u -> u.getUsername().equals("imported5")).findFirst().orElseThrow();
+        assertEquals("name, quoted", quoted.getName());
+        assertEquals(Gender.FEMALE, quoted.getGender());
+
+        CreateUserRequest request = new CreateUserRequest("name", "surname", "imported1",
+                "other@email.com", "1999-01-25", Gender.UNKNOWN);
+        this.mockMvc.perform(post("/v1/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writer().withDefaultPrettyPrinter().writeValueAsString(request)))
+                .andExpect(status().isConflict());
+
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testImportUsers_whenHeaderLacksColumns_shouldReturn400Error() throws Exception {
+        this.mockMvc.perform(post("/v1/user/bulk")
+                        .contentType("text/csv")
+                        .content("name,surname,username,email\nname,surname,username,email@email.com\n"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, userRepository.count());
+    }
+
+    @Test
+    public void testImportUsers_whenCsvIsMalformed_shouldImportNothingAndReturn400Error() throws Exception {
+        String csv = "name,surname,username,email,dateOfBirth,gender\n"
+                + "name,surname,imported1,imported1@email.com,1999-01-25,MALE\n"
+                + "\"name\"x,surname,imported2,imported2@email.com,1999-01-25,MALE\n";
+
+        this.mockMvc.perform(post("/v1/user/bulk")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("Malformed CSV after 1 rows")));
+
+        assertEquals(0, userRepository.count());
+    }
+
     @Test
     public void testCreateUser_whenCreateUserRequestIsNotValid_shouldNotCreateUserAndReturn400Error() throws Exception {
 
@@ -274,6 +376,23 @@ class UserControllerIT extends IntegrationTestSupport {
         groupRepository.deleteById(Objects.requireNonNull(group.getId()));
     }
 
+    @Test
+    public void testUpdateUserAddGroup_whenUserIsAlreadyMember_shouldKeepOneMembershipAndReturnUserDto() throws Exception {
+        Group group = groupRepository.save(generateGroup(1));
+        User user = userRepository.save(generateUser(1));
+        groupRepository.addMember(user.getId(), group.getId());
+
+        // the insert conflicts with the existing row inside the transaction of the request
+        this.mockMvc.perform(put("/v1/user/" + user.getId() +"/"+ group.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.groups[*]", hasSize(1)))
+                .andExpect(jsonPath("$.groups[0].id", is(group.getId())));
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+        groupRepository.deleteById(Objects.requireNonNull(group.getId()));
+    }
+
     @Test
     public void testDeleteUser_whenUserIdNotExists_shouldNotDeleteUserAndReturn404NotFound() throws Exception {
         User user = userRepository.save(generateUser(1));
@@ -289,14 +408,111 @@ class UserControllerIT extends IntegrationTestSupport {
     }
 
     @Test
-    public void testDeleteUser_whenUserIdExists_shouldDeleteUserAndReturnConfirmationString() throws Exception {
+    public void testDeleteUser_whenUserIdExists_shouldHideUserAndReturnPurgeJob() throws Exception {
         User user = userRepository.save(generateUser(1));
 
-        this.mockMvc.perform(delete("/v1/user/" + user.getId())
+        MvcResult result = this.mockMvc.perform(delete("/v1/user/" + user.getId())
                         .contentType(MediaType.APPLICATION_JSON))
-                        .andExpect(status().isOk());
+                        .andExpect(status().isAccepted())
+                        .andExpect(jsonPath("$.targetType", is("USER")))
+                        .andExpect(jsonPath("$.targetId", is(user.getId())))
+                        .andReturn();
 
         List<User> createdUser = userRepository.findAll();
         assertEquals(0, createdUser.size());
+        awaitPurge(result);
+    }
+
+    @Test
+    public void testDeleteUser_whenUserHasBlogCommentsAndGroups_shouldHideAllAtOnceAndPurgeInBatches() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        User other = userRepository.save(generateUser(2));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Blog otherBlog = blogRepository.save(generateBlog(other));
+        List<Post> posts = postRepository.saveAll(List.of(generatePost(blog), generatePost(blog)));
+        Post otherPost = postRepository.save(generatePost(otherBlog));
+        commentRepository.saveAll(List.of(generateComment(posts.get(0), user), generateComment(posts.get(1), user),
+                generateComment(posts.get(1), user), generateComment(posts.get(0), other),
+                generateComment(otherPost, user), generateComment(otherPost, user)));
+        Comment otherComment = commentRepository.save(generateComment(otherPost, other));
+        Group group = groupRepository.save(new Group(null, "name1", "description", generateLocalDate(),
+                List.of(GroupsType.DEFAULT), Set.of(user, other)));
+
+        MvcResult result = this.mockMvc.perform(delete("/v1/user/" + user.getId()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", startsWith("/v1/purge/")))
+                .andReturn();
+
+        this.mockMvc.perform(get("/v1/user/" + user.getId())).andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/v1/blog/" + blog.getId())).andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/v1/post/" + posts.get(0).getId())).andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/v1/comment/post/" + otherPost.getId()))
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        // 5 own comments, 1 comment on an own post, 2 posts, the blog, 1 membership and the user
+        PurgeJob purge = awaitPurge(result);
+        assertEquals(11, purge.getDeletedRows());
+        this.mockMvc.perform(get(result.getResponse().getHeader("Location")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("DONE")))
+                .andExpect(jsonPath("$.deletedRows", is(11)));
+        // the unique username and email are free again
+        User again = userRepository.save(generateUser(1));
+
+        assertEquals(List.of(otherComment.getId()),
+                commentRepository.findAllByPostId(otherPost.getId()).stream().map(Comment::getId).collect(Collectors.toList()));
+        groupRepository.deleteById(Objects.requireNonNull(group.getId()));
+        commentRepository.deleteById(Objects.requireNonNull(otherComment.getId()));
+        postRepository.deleteById(Objects.requireNonNull(otherPost.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(otherBlog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(again.getId()));
+        userRepository.deleteById(Objects.requireNonNull(other.getId()));
+    }
+
+    @Test
+    public void testGetPurgeJobById_whenJobIdNotExists_shouldReturn404NotFound() throws Exception {
+        this.mockMvc.perform(get("/v1/purge/unknownJobId")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testPatchUser_whenOnlyEmailIsGiven_shouldKeepUsernameAndRefuseEmailOfOtherUser() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        User other = userRepository.save(generateUser(2));
+
+        this.mockMvc.perform(patch("/v1/user/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"fresh@email.com\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.username", is(user.getUsername())))
+                .andExpect(jsonPath("$.email", is("fresh@email.com")));
+
+        this.mockMvc.perform(patch("/v1/user/" + user.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + other.getEmail() + "\"}"))
+                .andExpect(status().isConflict());
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+        userRepository.deleteById(Objects.requireNonNull(other.getId()));
+    }
+
+    @Test
+    public void testGetUserById_whenFieldsAreGiven_shouldReturnOnlyThoseFields() throws Exception {
+        User user = userRepository.save(generateUser(1));
+
+        this.mockMvc.perform(get("/v1/user/" + user.getId() + "?fields=email,username"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", contains(user.getEmail(), user.getUsername())))
+                .andExpect(jsonPath("$.dateOfBirth").doesNotExist());
+
+        this.mockMvc.perform(get("/v1/user?fields=username"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].username", hasItem(user.getUsername())))
+                .andExpect(jsonPath("$.[*].email").doesNotExist());
+
+        this.mockMvc.perform(get("/v1/user?fields=groups"))
+                .andExpect(status().isBadRequest());
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.folksdev.blog.migration;
+
+import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.GroupsTypeConverter;
+import com.folksdev.blog.model.TopicsType;
+import com.folksdev.blog.model.TopicsTypeConverter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+/**
+ * The PostgreSQL migrations can't run against H2, so this only reads them: every topic
+ * and group type needs the partial index its listing is written for.
+ */
+class BitmaskIndexMigrationTest {
+
+    private static String migrations;
+
+    @BeforeAll
+    static void readMigrations() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        for (Resource resource : new PathMatchingResourcePatternResolver()
+                .getResources("classpath:db/vendor/postgresql/*.sql")) {
+            sql.append(new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+        migrations = sql.toString();
+    }
+
+    @Test
+    public void testMigrations_whenTopicIsListed_shouldHavePartialIndexInPageOrder() {
+        TopicsTypeConverter converter = new TopicsTypeConverter();
+        for (TopicsType topic : TopicsType.values()) {
+            assertThat(topic.name(), migrations, containsString("on post (date desc, post_id desc) where (topics_types & "
+                    + converter.convertToDatabaseColumn(List.of(topic)) + ") <> 0;"));
+        }
+    }
+
+    @Test
+    public void testMigrations_whenGroupTypeIsListed_shouldHavePartialIndex() {
+        GroupsTypeConverter converter = new GroupsTypeConverter();
+        for (GroupsType type : GroupsType.values()) {
+            assertThat(type.name(), migrations, containsString("on blog_group (group_id) where (groups_types & "
+                    + converter.convertToDatabaseColumn(List.of(type)) + ") <> 0;"));
+        }
+    }
+}
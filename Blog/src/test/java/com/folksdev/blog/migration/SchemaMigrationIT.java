@@ -0,0 +1,100 @@
+package com.folksdev.blog.migration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Builds the schema from the Flyway migrations instead of Hibernate DDL and lets
+ * Hibernate validate the entity mappings against it. The context only starts if
+ * the migrations and the mapped model agree.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migration;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@TestPropertySource(locations = "classpath:application.properties")
+@DirtiesContext
+class SchemaMigrationIT {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testMigrations_whenAppliedToEmptyDatabase_shouldCreateLookupIndexes() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "select index_name from information_schema.indexes", String.class);
+
+        assertThat(indexes, hasItems(
+                "ix_post_blog_id_date",
+                "ix_post_date_post_id",
+                "ix_comment_post_id_date_comment_id",
+                "ix_comment_user_id",
+                "ix_users_groups_user_id"));
+    }
+
+    @Test
+    public void testMigrations_whenAppliedToEmptyDatabase_shouldDropElementCollectionTables() {
+        List<String> tables = jdbcTemplate.queryForList(
+                "select table_name from information_schema.tables where table_schema = 'public'", String.class);
+
+        assertThat(tables, not(hasItem("post_topics_types")));
+        assertThat(tables, not(hasItem("group_groups_types")));
+    }
+
+    @Test
+    public void testMigrations_whenAppliedToEmptyDatabase_shouldCascadeDeletesToChildRows() {
+        List<String> cascading = jdbcTemplate.queryForList(
+                "select constraint_name from information_schema.referential_constraints where delete_rule = 'CASCADE'",
+                String.class);
+
+        assertThat(cascading, hasItems(
+                "fk_blog_user",
+                "fk_post_blog",
+                "fk_comment_post",
+                "fk_comment_user",
+                "fk_users_groups_user",
+                "fk_users_groups_group"));
+    }
+
+    @TestConfiguration
+    static class MigrationConfig {
+
+        /**
+         * V1_1 seeds a user with a PostgreSQL-only date literal that H2 can't parse.
+         * The schema is migrated up to V1_0 under a separate history table, and the
+         * real history is then baselined past the seed before the remaining
+         * migrations run.
+         */
+        @Bean
+        public FlywayMigrationStrategy skipSeedDataMigrationStrategy() {
+            return flyway -> {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .table("flyway_bootstrap_history")
+                        .target("1.0")
+                        .load()
+                        .migrate();
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .baselineOnMigrate(true)
+                        .baselineVersion("1.1")
+                        .load()
+                        .migrate();
+            };
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.IntegrationTestSupport;
+import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Comment;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.model.User;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManager;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CommentRepositoryIT extends IntegrationTestSupport {
+
+    @Test
+    public void testFindById_whenCommentIsLoaded_shouldNotLoadItsPostAndUser() {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Comment comment = commentRepository.save(generateComment(post, user));
+
+        statistics().clear();
+        Comment loaded = commentRepository.findById(Objects.requireNonNull(comment.getId())).orElseThrow();
+
+        assertFalse(Hibernate.isInitialized(loaded.getPost()));
+        assertFalse(Hibernate.isInitialized(loaded.getUser()));
+        assertEquals(post.getId(), loaded.getPost().getId());
+        assertEquals(user.getId(), loaded.getUser().getId());
+        assertFalse(Hibernate.isInitialized(loaded.getPost()));
+        assertEquals(1, statistics().getEntityLoadCount());
+        assertEquals(1, statistics().getPrepareStatementCount());
+
+        commentRepository.deleteById(comment.getId());
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+    @Test
+    public void testDeleteById_whenPostHasComments_shouldLeaveThemToTheDatabase() {
+        User user = userRepository.save(generateUser(1));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        for (int i = 0; i < 5; i++) {
+            commentRepository.save(generateComment(post, user));
+        }
+
+        statistics().clear();
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+
+        // one select for the post and one delete, however many comments it had
+        assertEquals(2, statistics().getPrepareStatementCount());
+        assertEquals(0, commentRepository.count());
+
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+        assertEquals(0, blogRepository.count());
+    }
+
+    @Test
+    public void testFindVisibleByIdAndPostComments_whenAuthorIsDeleted_shouldLeaveTheirCommentsOut() throws Exception {
+        User user = userRepository.save(generateUser(1));
+        User other = userRepository.save(generateUser(2));
+        Blog blog = blogRepository.save(generateBlog(user));
+        Post post = postRepository.save(generatePost(blog));
+        Comment comment = commentRepository.save(generateComment(post, user));
+        Comment otherComment = commentRepository.save(generateComment(post, other));
+
+        MvcResult result = this.mockMvc.perform(delete("/v1/user/" + other.getId()))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        assertTrue(commentRepository.findVisibleById(Objects.requireNonNull(otherComment.getId())).isEmpty());
+        assertTrue(commentRepository.findVisibleById(Objects.requireNonNull(comment.getId())).isPresent());
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Post loaded = entityManager.find(Post.class, post.getId());
+            assertEquals(Set.of(comment.getId()),
+                    loaded.getComments().stream().map(Comment::getId).collect(Collectors.toSet()));
+        } finally {
+            entityManager.close();
+        }
+        awaitPurge(result);
+
+        commentRepository.deleteById(comment.getId());
+        postRepository.deleteById(Objects.requireNonNull(post.getId()));
+        blogRepository.deleteById(Objects.requireNonNull(blog.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.folksdev.blog.repository;
+
+import com.folksdev.blog.IntegrationTestSupport;
+import com.folksdev.blog.model.Group;
+import com.folksdev.blog.model.GroupsType;
+import com.folksdev.blog.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupRepositoryIT extends IntegrationTestSupport {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testFindById_whenGroupWasReadBefore_shouldServeItFromSecondLevelCache() {
+        Group group = groupRepository.save(generateGroup(1));
+        entityManagerFactory.getCache().evictAll();
+
+        statistics().clear();
+        groupRepository.findById(Objects.requireNonNull(group.getId())).orElseThrow();
+        assertEquals(1, statistics().getPrepareStatementCount());
+        assertEquals(1, statistics().getSecondLevelCachePutCount());
+
+        statistics().clear();
+        Group cached = groupRepository.findById(group.getId()).orElseThrow();
+        assertEquals(0, statistics().getPrepareStatementCount());
+        assertEquals(1, statistics().getSecondLevelCacheHitCount());
+        assertEquals(group.getName(), cached.getName());
+        assertEquals(group.getGroupsTypes(), cached.getGroupsTypes());
+
+        groupRepository.deleteById(group.getId());
+    }
+
+    @Test
+    public void testFindById_whenGroupWasUpdated_shouldNotServeStaleEntry() {
+        Group group = groupRepository.save(generateGroup(1));
+        groupRepository.findById(Objects.requireNonNull(group.getId())).orElseThrow();
+
+        groupRepository.save(new Group(group.getId(), "renamed", group.getDescription(), group.getDate(),
+                group.getGroupsTypes(), null, group.getVersion()));
+
+        assertEquals("renamed", groupRepository.findById(group.getId()).orElseThrow().getName());
+
+        groupRepository.deleteById(group.getId());
+    }
+
+    @Test
+    public void testSecondLevelCacheMetrics_whenContextStarts_shouldBeRegisteredPerRegion() {
+        assertNotNull(meterRegistry.find("cache.evictions").tag("cache", "groups").meter());
+        assertNotNull(meterRegistry.find("cache.evictions").tag("cache", "users").meter());
+        assertNotNull(meterRegistry.find("hibernate.second.level.cache.requests").tag("region", "groups").meter());
+    }
+
+    @Test
+    public void testDeleteById_whenGroupWasCachedByQuery_shouldDeleteItsMemberships() {
+        User user = userRepository.save(generateUser(1));
+        Group group = groupRepository.save(new Group(null, "name1", "description", generateLocalDate(),
+                List.of(GroupsType.DEFAULT), Set.of(user)));
+        entityManagerFactory.getCache().evictAll();
+        groupRepository.findAll();
+
+        groupRepository.deleteById(Objects.requireNonNull(group.getId()));
+
+        assertFalse(groupRepository.existsById(group.getId()));
+        userRepository.deleteById(Objects.requireNonNull(user.getId()));
+    }
+}
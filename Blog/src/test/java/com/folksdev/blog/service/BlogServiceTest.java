@@ -2,19 +2,30 @@ package com.folksdev.blog.service;
 
 import com.folksdev.blog.TestSupport;
 import com.folksdev.blog.dto.BlogDto;
+import com.folksdev.blog.dto.BlogSummaryDto;
+import com.folksdev.blog.dto.PurgeJobDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.converter.BlogDtoConverter;
 import com.folksdev.blog.dto.requests.CreateBlogRequest;
+import com.folksdev.blog.dto.requests.PatchBlogRequest;
+import com.folksdev.blog.event.BlogChangedEvent;
 import com.folksdev.blog.exception.BlogNotFoundException;
 import com.folksdev.blog.exception.BlogUniqueConstraintsViolatedException;
+import com.folksdev.blog.exception.PreconditionFailedException;
 import com.folksdev.blog.exception.UserNotFoundException;
 import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.PurgeStatus;
+import com.folksdev.blog.model.PurgeTarget;
 import com.folksdev.blog.model.User;
 import com.folksdev.blog.repository.BlogRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,7 +34,10 @@ class BlogServiceTest extends TestSupport {
 
     private  BlogRepository blogRepository;
     private  BlogDtoConverter blogDtoConverter;
+    private  CommentPreviewLoader commentPreviewLoader;
     private  UserService userService;
+    private  ApplicationEventPublisher eventPublisher;
+    private  PurgeService purgeService;
 
     private BlogService blogService;
 
@@ -31,41 +45,42 @@ class BlogServiceTest extends TestSupport {
     void setUp() {
         blogRepository = Mockito.mock(BlogRepository.class);
         blogDtoConverter = Mockito.mock(BlogDtoConverter.class);
+        commentPreviewLoader = Mockito.mock(CommentPreviewLoader.class);
         userService = Mockito.mock(UserService.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        purgeService = Mockito.mock(PurgeService.class);
 
-        blogService = new BlogService(blogRepository,blogDtoConverter,userService);
+        blogService = new BlogService(blogRepository,blogDtoConverter,commentPreviewLoader,userService,eventPublisher,purgeService,
+                UniquenessCheck.QUERY);
     }
 
     @Test
-    void testGetBlogs_whenCalled_shouldReturnListOfBlogDto(){
-        List<Blog> blogList = List.of(
-                generateBlog("id1"),
-                generateBlog("id2")
+    void testGetBlogs_whenCalled_shouldReturnListOfBlogSummaryDto(){
+        List<BlogSummaryDto> expectedSummaryList = List.of(
+                generateBlogSummaryDto(),
+                generateBlogSummaryDto()
         );
-        List<BlogDto> expectedBlogDtoList = generateBlogDtoList();
 
-        Mockito.when(blogRepository.findAll()).thenReturn(blogList);
-        Mockito.when(blogDtoConverter.convert(blogList.get(0))).thenReturn(expectedBlogDtoList.get(0));
-        Mockito.when(blogDtoConverter.convert(blogList.get(1))).thenReturn(expectedBlogDtoList.get(1));
+        Mockito.when(blogRepository.findAllSummaries()).thenReturn(expectedSummaryList);
 
-        List<BlogDto> actualBlogDtoList = blogService.getBlogs();
+        List<BlogSummaryDto> actualSummaryList = blogService.getBlogs();
 
-        assertEquals(expectedBlogDtoList, actualBlogDtoList);
+        assertEquals(expectedSummaryList, actualSummaryList);
 
-        Mockito.verify(blogRepository).findAll();
-        Mockito.verify(blogDtoConverter).convert(blogList.get(0));
-        Mockito.verify(blogDtoConverter).convert(blogList.get(1));
+        Mockito.verify(blogRepository).findAllSummaries();
+        Mockito.verifyNoInteractions(blogDtoConverter);
     }
 
     @Test
     void testGetBlogById_whenBlogIdNotExists_shouldThrowBlogNotFoundException(){
         String blogId = "blogId";
 
-        Mockito.when(blogRepository.findById(blogId)).thenThrow(BlogNotFoundException.class);
+        Mockito.when(blogRepository.findAggregateById(blogId)).thenReturn(Optional.empty());
         assertThrows(BlogNotFoundException.class,
                 ()-> blogService.getBlogById(blogId));
 
-        Mockito.verify(blogRepository).findById(blogId);
+        Mockito.verify(blogRepository).findAggregateById(blogId);
+        Mockito.verifyNoInteractions(commentPreviewLoader);
         Mockito.verifyNoInteractions(blogDtoConverter);
     }
 
@@ -74,15 +89,16 @@ class BlogServiceTest extends TestSupport {
         String blogId = "blogId";
         Blog blog = generateBlog(blogId);
         BlogDto expectedBlogDto = generateBlogDto(blogId);
-        Mockito.when(blogRepository.findById(blogId)).thenReturn(Optional.of(blog));
-        Mockito.when(blogDtoConverter.convert(blog)).thenReturn(expectedBlogDto);
+        Mockito.when(blogRepository.findAggregateById(blogId)).thenReturn(Optional.of(blog));
+        Mockito.when(blogDtoConverter.convert(blog, Map.of())).thenReturn(expectedBlogDto);
 
         BlogDto actualBlogDto = blogService.getBlogById(blogId);
 
         assertEquals(expectedBlogDto,actualBlogDto);
 
-        Mockito.verify(blogRepository).findById(blogId);
-        Mockito.verify(blogDtoConverter).convert(blog);
+        Mockito.verify(blogRepository).findAggregateById(blogId);
+        Mockito.verify(commentPreviewLoader).load(List.of());
+        Mockito.verify(blogDtoConverter).convert(blog, Map.of());
     }
 
     @Test
@@ -121,19 +137,22 @@ class BlogServiceTest extends TestSupport {
     }
 
     @Test
-    void testDeleteBlog_whenBlogIdExists_shouldReturnConfirmationString(){
+    void testDeleteBlog_whenBlogIdExists_shouldMarkBlogAndSchedulePurge(){
         String blogId = "blogId";
         Blog blog = generateBlog(blogId);
-        String expected = "Blog successfully deleted from database with id:" + blogId;
+        PurgeJobDto expected = new PurgeJobDto("jobId", PurgeTarget.BLOG, blogId, PurgeStatus.PENDING, 0, LocalDateTime.now(), null);
 
         Mockito.when(blogRepository.findById(blogId)).thenReturn(Optional.of(blog));
+        Mockito.when(purgeService.schedulePurge(PurgeTarget.BLOG, blogId)).thenReturn(expected);
 
-        String actual = blogService.deleteBlog(blogId);
+        PurgeJobDto actual = blogService.deleteBlog(blogId);
 
         assertEquals(expected, actual);
+        assertNotNull(blog.getDeletedAt());
 
         Mockito.verify(blogRepository).findById(blogId);
-        Mockito.verify(blogRepository).deleteById(blogId);
+        Mockito.verify(blogRepository, Mockito.never()).deleteById(blogId);
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent(blogId));
     }
 
     @Test
@@ -193,14 +212,34 @@ class BlogServiceTest extends TestSupport {
         Blog blog = generateBlog(null);
 
         Mockito.when(userService.findUserById(userId)).thenReturn(user);
-        Mockito.when(blogDtoConverter.convert(blogRepository.save(blog))).thenReturn(expected);
+        Mockito.when(blogRepository.save(Mockito.any(Blog.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(blogDtoConverter.convert(Mockito.any(Blog.class), Mockito.eq(Map.of()))).thenReturn(expected);
 
         BlogDto actual = blogService.createBlog(createBlogRequest,userId);
         assertEquals(expected,actual);
 
         Mockito.verify(userService).findUserById(userId);
         Mockito.verify(blogRepository).existsByUserId(userId);
-        Mockito.verify(blogDtoConverter).convert(blogRepository.save(blog));
+        Mockito.verify(blogDtoConverter).convert(Mockito.any(Blog.class), Mockito.eq(Map.of()));
+    }
+
+    @Test
+    void testCreateBlog_whenUniquenessIsLeftToConstraint_shouldSaveWithoutQueryingUsersBlog(){
+        blogService = new BlogService(blogRepository,blogDtoConverter,commentPreviewLoader,userService,eventPublisher,purgeService,
+                UniquenessCheck.CONSTRAINT);
+        String userId = "userId";
+        CreateBlogRequest createBlogRequest = generateBlogRequest();
+        BlogDto expected = generateBlogDto("blogId");
+        Blog blog = generateBlog(null);
+
+        Mockito.when(userService.findUserById(userId)).thenReturn(generateUser(userId));
+        Mockito.when(blogRepository.save(Mockito.any(Blog.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(blogDtoConverter.convert(Mockito.any(Blog.class), Mockito.eq(Map.of()))).thenReturn(expected);
+
+        BlogDto actual = blogService.createBlog(createBlogRequest,userId);
+        assertEquals(expected,actual);
+
+        Mockito.verify(blogRepository, Mockito.never()).existsByUserId(userId);
     }
 
     @Test
@@ -208,12 +247,12 @@ class BlogServiceTest extends TestSupport {
         String blogId = "blogId";
         CreateBlogRequest createBlogRequest = generateBlogRequest();
 
-        Mockito.when(blogRepository.findById(blogId)).thenThrow(BlogNotFoundException.class);
+        Mockito.when(blogRepository.findAggregateById(blogId)).thenReturn(Optional.empty());
 
         assertThrows(BlogNotFoundException.class,
                 ()-> blogService.updateBlog(createBlogRequest,blogId));
 
-        Mockito.verify(blogRepository).findById(blogId);
+        Mockito.verify(blogRepository).findAggregateById(blogId);
         Mockito.verifyNoInteractions(blogDtoConverter);
     }
 
@@ -224,16 +263,54 @@ class BlogServiceTest extends TestSupport {
         BlogDto expected = generateBlogDto("blogId");
         Blog blog = generateBlog(blogId);
 
-        Mockito.when(blogRepository.findById(blogId)).thenReturn(Optional.of(blog));
-        Mockito.when(blogDtoConverter.convert(blogRepository.save(blog))).thenReturn(expected);
+        Mockito.when(blogRepository.findAggregateById(blogId)).thenReturn(Optional.of(blog));
+        Mockito.when(blogRepository.save(Mockito.any(Blog.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(blogDtoConverter.convert(Mockito.any(Blog.class), Mockito.eq(Map.of()))).thenReturn(expected);
 
         BlogDto actual = blogService.updateBlog(createBlogRequest,blogId);
         assertEquals(expected,actual);
 
-        Mockito.verify(blogRepository).findById(blogId);
-        Mockito.verify(blogDtoConverter).convert(blogRepository.save(blog));
+        Mockito.verify(blogRepository).findAggregateById(blogId);
+        Mockito.verify(blogDtoConverter).convert(Mockito.any(Blog.class), Mockito.eq(Map.of()));
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent(blogId));
     }
 
+    @Test
+    void testPatchBlog_whenOnlyTitleIsGiven_shouldChangeTitleOnManagedBlogAndFlush(){
+        String blogId = "blogId";
+        Blog generated = generateBlog(blogId);
+        Blog blog = new Blog(generated.getId(), generated.getTitle(), generated.getDescription(), generated.getContent(),
+                generated.getDate(), generated.getUser(), generated.getPosts(), 0L);
+        BlogDto expected = generateBlogDto(blogId);
+
+        Mockito.when(blogRepository.findAggregateById(blogId)).thenReturn(Optional.of(blog));
+        Mockito.when(blogDtoConverter.convert(blog, Map.of())).thenReturn(expected);
+
+        Versioned<BlogDto> actual = blogService.patchBlog(blogId, new PatchBlogRequest("new title", null, null), null);
+
+        assertEquals(expected, actual.getBody());
+        assertEquals("new title", blog.getTitle());
+        assertEquals("description", blog.getDescription());
+        assertEquals("content", blog.getContent());
+        Mockito.verify(blogRepository).flush();
+        Mockito.verify(blogRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent(blogId));
+    }
 
+    @Test
+    void testPatchBlog_whenIfMatchIsStale_shouldThrowPreconditionFailedException(){
+        String blogId = "blogId";
+        Blog blog = generateBlog(blogId);
+        Blog versioned = new Blog(blog.getId(), blog.getTitle(), blog.getDescription(), blog.getContent(),
+                blog.getDate(), blog.getUser(), blog.getPosts(), 3L);
 
+        Mockito.when(blogRepository.findAggregateById(blogId)).thenReturn(Optional.of(versioned));
+
+        assertThrows(PreconditionFailedException.class,
+                ()-> blogService.patchBlog(blogId, new PatchBlogRequest("new title", null, null), "\"2\""));
+
+        assertEquals("title", versioned.getTitle());
+        Mockito.verify(blogRepository, Mockito.never()).flush();
+        Mockito.verifyNoInteractions(eventPublisher);
+    }
 }
\ No newline at end of file
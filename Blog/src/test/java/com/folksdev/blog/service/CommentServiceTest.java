@@ -1,17 +1,24 @@
 package com.folksdev.blog.service;
 
 import com.folksdev.blog.TestSupport;
+import com.folksdev.blog.dto.AcceptedCommentDto;
 import com.folksdev.blog.dto.CommentDto;
+import com.folksdev.blog.dto.CursorPageDto;
 import com.folksdev.blog.dto.converter.CommentDtoConverter;
 import com.folksdev.blog.dto.requests.CreateCommentRequest;
+import com.folksdev.blog.event.BlogChangedEvent;
 import com.folksdev.blog.exception.CommentNotFoundException;
+import com.folksdev.blog.exception.CommentQueueFullException;
 import com.folksdev.blog.exception.PostNotFoundException;
 import com.folksdev.blog.exception.UserNotFoundException;
 import com.folksdev.blog.model.*;
 import com.folksdev.blog.repository.CommentRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,6 +31,8 @@ class CommentServiceTest extends TestSupport {
     private CommentDtoConverter commentDtoConverter;
     private PostService postService;
     private UserService userService;
+    private ApplicationEventPublisher eventPublisher;
+    private CommentWriteBehindQueue commentQueue;
 
     private CommentService commentService;
 
@@ -34,18 +43,21 @@ class CommentServiceTest extends TestSupport {
         commentDtoConverter = Mockito.mock(CommentDtoConverter.class);
         postService = Mockito.mock(PostService.class);
         userService = Mockito.mock(UserService.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        commentQueue = Mockito.mock(CommentWriteBehindQueue.class);
 
-        commentService = new CommentService(commentRepository, commentDtoConverter, postService, userService);
+        commentService = new CommentService(commentRepository, commentDtoConverter, postService, userService, eventPublisher,
+                commentQueue);
     }
 
     @Test
     void testFindCommentById_whenCommentIdNotExists_shouldThrowCommentNotFoundException() {
 
         String commentId = "commentId";
-        Mockito.when(commentRepository.findById(commentId)).thenThrow(CommentNotFoundException.class);
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenThrow(CommentNotFoundException.class);
         assertThrows(CommentNotFoundException.class,
                 () -> commentService.findCommentById(commentId));
-        Mockito.verify(commentRepository).findById((commentId));
+        Mockito.verify(commentRepository).findVisibleById((commentId));
     }
 
     @Test
@@ -54,23 +66,23 @@ class CommentServiceTest extends TestSupport {
         String commentId = "commentId";
         Comment expected = generateComment(commentId);
 
-        Mockito.when(commentRepository.findById(commentId)).thenReturn(Optional.of(expected));
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenReturn(Optional.of(expected));
 
         Comment actual = commentService.findCommentById(commentId);
         assertEquals(expected, actual);
 
-        Mockito.verify(commentRepository).findById((commentId));
+        Mockito.verify(commentRepository).findVisibleById((commentId));
     }
 
     @Test
     void testGetCommentById_whenCommentIdNotExists_shouldThrowCommentNotFoundException() {
         String commentId = "commentId";
 
-        Mockito.when(commentRepository.findById(commentId)).thenThrow(CommentNotFoundException.class);
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenThrow(CommentNotFoundException.class);
         assertThrows(CommentNotFoundException.class,
                 () -> commentService.getCommentById(commentId));
 
-        Mockito.verify(commentRepository).findById(commentId);
+        Mockito.verify(commentRepository).findVisibleById(commentId);
         Mockito.verifyNoInteractions(commentDtoConverter);
     }
 
@@ -80,13 +92,13 @@ class CommentServiceTest extends TestSupport {
         Comment comment = generateComment(commentId);
         CommentDto expected = new CommentDto("body", generateLocalDate().toString(), "title", "username");
 
-        Mockito.when(commentRepository.findById(commentId)).thenReturn(Optional.of(comment));
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenReturn(Optional.of(comment));
         Mockito.when(commentDtoConverter.convert(comment)).thenReturn(expected);
 
         CommentDto actual = commentService.getCommentById(commentId);
         assertEquals(expected, actual);
 
-        Mockito.verify(commentRepository).findById(commentId);
+        Mockito.verify(commentRepository).findVisibleById(commentId);
         Mockito.verify(commentDtoConverter).convert(comment);
 
     }
@@ -94,19 +106,19 @@ class CommentServiceTest extends TestSupport {
     @Test
     void testGetCommentsByPostId_whenPostIdNotExists_shouldThrowPostNotFoundException() {
         String postId = "postId";
+        Mockito.when(commentRepository.findFirstPageByPostId(postId, PageRequest.of(0, 21))).thenReturn(List.of());
         Mockito.when(postService.findPostById(postId)).thenThrow(PostNotFoundException.class);
         assertThrows(PostNotFoundException.class,
-                () -> commentService.getCommentsByPostId(postId));
+                () -> commentService.getCommentsByPostId(postId, null, 20));
 
+        Mockito.verify(commentRepository).findFirstPageByPostId(postId, PageRequest.of(0, 21));
         Mockito.verify(postService).findPostById(postId);
-        Mockito.verifyNoInteractions(commentRepository);
         Mockito.verifyNoInteractions(commentDtoConverter);
     }
 
     @Test
     void testGetCommentsByPostId_whenPostIdExists_shouldReturnListOfCommentDto() {
         String postId = "postId";
-        Post post = generatePost(postId);
         List<Comment> commentList = List.of(
                 generateComment("id1"),
                 generateComment("id2")
@@ -121,19 +133,34 @@ class CommentServiceTest extends TestSupport {
                         commentList.get(1).getPost().getTitle(),
                         commentList.get(1).getUser().getUsername()));
 
-        Mockito.when(postService.findPostById(postId)).thenReturn(post);
-        Mockito.when(commentRepository.findAllByPostId(postId)).thenReturn(commentList);
-        Mockito.when(commentDtoConverter.convert(commentList.get(0))).thenReturn(expectedCommentDtoList.get(0));
-        Mockito.when(commentDtoConverter.convert(commentList.get(1))).thenReturn(expectedCommentDtoList.get(1));
+        Mockito.when(commentRepository.findFirstPageByPostId(postId, PageRequest.of(0, 21)))
+                .thenReturn(expectedCommentDtoList);
 
-        List<CommentDto> actualCommentDtoList = commentService.getCommentsByPostId(postId);
+        CursorPageDto<CommentDto> actualPage = commentService.getCommentsByPostId(postId, null, 20);
 
-        assertEquals(expectedCommentDtoList, actualCommentDtoList);
+        assertEquals(expectedCommentDtoList, actualPage.getItems());
+        assertNull(actualPage.getNextCursor());
 
-        Mockito.verify(postService).findPostById(postId);
-        Mockito.verify(commentRepository).findAllByPostId(postId);
-        Mockito.verify(commentDtoConverter).convert(commentList.get(0));
-        Mockito.verify(commentDtoConverter).convert(commentList.get(1));
+        Mockito.verify(commentRepository).findFirstPageByPostId(postId, PageRequest.of(0, 21));
+        Mockito.verifyNoInteractions(postService);
+        Mockito.verifyNoInteractions(commentDtoConverter);
+    }
+
+    @Test
+    void testGetCommentsByPostId_whenMoreRowsThanPageSize_shouldReturnNextCursorOfLastComment() {
+        String postId = "postId";
+        List<CommentDto> rows = List.of(
+                new CommentDto("id2", "body", generateLocalDateTime(), "title", "username"),
+                new CommentDto("id1", "body", generateLocalDateTime(), "title", "username"));
+        String cursor = new KeysetCursor(generateLocalDateTime(), "id3").encode();
+        Mockito.when(commentRepository.findPageByPostIdAfter(postId, generateLocalDateTime(), "id3", PageRequest.of(0, 2)))
+                .thenReturn(rows);
+
+        CursorPageDto<CommentDto> actualPage = commentService.getCommentsByPostId(postId, cursor, 1);
+
+        assertEquals(List.of(rows.get(0)), actualPage.getItems());
+        assertEquals(new KeysetCursor(generateLocalDateTime(), "id2").encode(), actualPage.getNextCursor());
+        Mockito.verifyNoInteractions(postService);
     }
 
     @Test
@@ -204,6 +231,51 @@ class CommentServiceTest extends TestSupport {
         Mockito.verify(userService).findUserById(userId);
         Mockito.verify(commentRepository).save(comment);
         Mockito.verify(commentDtoConverter).convert(commentRepository.save(comment));
+        Mockito.verify(postService).incrementVersion(postId);
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent("blogId"));
+    }
+
+    @Test
+    void testAcceptComment_whenPostIdNotExists_shouldThrowPostNotFoundException() {
+        String postId = "postId";
+        Mockito.when(postService.findBlogIdByPostId(postId)).thenThrow(PostNotFoundException.class);
+
+        assertThrows(PostNotFoundException.class,
+                () -> commentService.acceptComment(postId, "userId", generateCommentRequest()));
+
+        Mockito.verifyNoInteractions(userService);
+        Mockito.verifyNoInteractions(commentQueue);
+    }
+
+    @Test
+    void testAcceptComment_whenPostAndUserExist_shouldQueueCommentUnderReturnedId() {
+        String postId = "postId";
+        String userId = "userId";
+        CreateCommentRequest createCommentRequest = generateCommentRequest();
+        Mockito.when(postService.findBlogIdByPostId(postId)).thenReturn("blogId");
+        Mockito.when(commentQueue.offer(ArgumentMatchers.anyString(), ArgumentMatchers.eq(createCommentRequest.getBody()),
+                ArgumentMatchers.any(), ArgumentMatchers.eq(postId), ArgumentMatchers.eq("blogId"),
+                ArgumentMatchers.eq(userId))).thenReturn(true);
+
+        AcceptedCommentDto accepted = commentService.acceptComment(postId, userId, createCommentRequest);
+
+        assertEquals(createCommentRequest.getBody(), accepted.getBody());
+        Mockito.verify(userService).findUserById(userId);
+        Mockito.verify(commentQueue).offer(ArgumentMatchers.eq(accepted.getId()), ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.anyString(),
+                ArgumentMatchers.anyString());
+        Mockito.verifyNoInteractions(commentRepository);
+        Mockito.verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testAcceptComment_whenQueueIsFull_shouldThrowCommentQueueFullException() {
+        Mockito.when(postService.findBlogIdByPostId("postId")).thenReturn("blogId");
+        Mockito.when(commentQueue.offer(ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.any(),
+                ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.anyString())).thenReturn(false);
+
+        assertThrows(CommentQueueFullException.class,
+                () -> commentService.acceptComment("postId", "userId", generateCommentRequest()));
     }
 
     @Test
@@ -212,11 +284,11 @@ class CommentServiceTest extends TestSupport {
         String commentId = "commentId";
         CreateCommentRequest createCommentRequest = generateCommentRequest();
 
-        Mockito.when(commentRepository.findById(commentId)).thenThrow(CommentNotFoundException.class);
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenThrow(CommentNotFoundException.class);
         assertThrows(CommentNotFoundException.class,
                 () -> commentService.updateComment(commentId, createCommentRequest));
 
-        Mockito.verify(commentRepository).findById(commentId);
+        Mockito.verify(commentRepository).findVisibleById(commentId);
         Mockito.verifyNoInteractions(commentDtoConverter);
 
     }
@@ -229,27 +301,29 @@ class CommentServiceTest extends TestSupport {
         Comment comment = generateComment(commentId);
         CommentDto expected = new CommentDto("body", generateLocalDate().toString(), "title", "username");
 
-        Mockito.when(commentRepository.findById(commentId)).thenReturn(Optional.of(comment));
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenReturn(Optional.of(comment));
         Mockito.when(commentDtoConverter.convert(commentRepository.save(comment))).thenReturn(expected);
 
 
         CommentDto actual = commentService.updateComment(commentId, createCommentRequest);
         assertEquals(expected, actual);
 
-        Mockito.verify(commentRepository).findById(commentId);
+        Mockito.verify(commentRepository).findVisibleById(commentId);
         Mockito.verify(commentRepository).save(comment);
         Mockito.verify(commentDtoConverter).convert(commentRepository.save(comment));
+        Mockito.verify(postService).incrementVersion("postId");
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent("blogId"));
     }
 
     @Test
     void testDeleteComment_whenCommentIdNotExists_shouldThrowCommentNotFoundException() {
         String commentId = "commentId";
 
-        Mockito.when(commentRepository.findById(commentId)).thenThrow(CommentNotFoundException.class);
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenThrow(CommentNotFoundException.class);
         assertThrows(CommentNotFoundException.class,
                 () -> commentService.deleteComment(commentId));
 
-        Mockito.verify(commentRepository).findById(commentId);
+        Mockito.verify(commentRepository).findVisibleById(commentId);
     }
 
     @Test
@@ -258,13 +332,15 @@ class CommentServiceTest extends TestSupport {
         Comment comment = generateComment(commentId);
         String expected = "Comment successfully deleted from database :" + commentId;
 
-        Mockito.when(commentRepository.findById(commentId)).thenReturn(Optional.of(comment));
+        Mockito.when(commentRepository.findVisibleById(commentId)).thenReturn(Optional.of(comment));
 
         String actual = commentService.deleteComment(commentId);
 
         assertEquals(expected, actual);
 
-        Mockito.verify(commentRepository).findById(commentId);
+        Mockito.verify(commentRepository).findVisibleById(commentId);
         Mockito.verify(commentRepository).deleteById(commentId);
+        Mockito.verify(postService).incrementVersion("postId");
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent("blogId"));
     }
 }
\ No newline at end of file
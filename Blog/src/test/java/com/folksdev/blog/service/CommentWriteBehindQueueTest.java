@@ -0,0 +1,104 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.event.BlogChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommentWriteBehindQueueTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private PostService postService;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry registry;
+
+    private CommentWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        postService = Mockito.mock(PostService.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        registry = new SimpleMeterRegistry();
+
+        queue = new CommentWriteBehindQueue(jdbcTemplate, Mockito.mock(PlatformTransactionManager.class), postService,
+                eventPublisher, 3, 2);
+        queue.bindTo(registry);
+    }
+
+    @Test
+    void testOffer_whenQueueIsFull_shouldRefuseComment() {
+        assertTrue(offer("1", "post1"));
+        assertTrue(offer("2", "post1"));
+        assertTrue(offer("3", "post1"));
+
+        assertFalse(offer("4", "post1"));
+        assertEquals(1, registry.get("blog.comment.queue.rejected").functionCounter().count());
+        assertEquals(3, registry.get("blog.comment.queue.size").gauge().value());
+    }
+
+    @Test
+    void testWriteNext_whenQueueIsEmpty_shouldWriteNothing() throws InterruptedException {
+        assertEquals(0, queue.writeNext(1));
+
+        Mockito.verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testWriteNext_whenCommentsAreQueued_shouldInsertOneBatchAndBumpEachPostOnce() throws InterruptedException {
+        offer("1", "post1");
+        offer("2", "post2");
+        offer("3", "post1");
+
+        assertEquals(2, queue.writeNext(1));
+        assertEquals(1, queue.writeNext(1));
+
+        Mockito.verify(jdbcTemplate).batchUpdate(ArgumentMatchers.anyString(),
+                ArgumentMatchers.argThat((Collection<Object> batch) -> batch.size() == 2),
+                ArgumentMatchers.eq(2), ArgumentMatchers.any());
+        Mockito.verify(postService, Mockito.times(2)).incrementVersion("post1");
+        Mockito.verify(postService).incrementVersion("post2");
+        Mockito.verify(eventPublisher, Mockito.times(2)).publishEvent(new BlogChangedEvent("blogId"));
+        assertEquals(3, registry.get("blog.comment.queue.written").functionCounter().count());
+    }
+
+    @Test
+    void testWriteNext_whenBatchIsRefused_shouldRetryEachCommentAlone() throws InterruptedException {
+        Mockito.when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.anyCollection(),
+                        ArgumentMatchers.anyInt(), ArgumentMatchers.any()))
+                .thenThrow(new DataIntegrityViolationException("fk_comment_post"))
+                .thenThrow(new DataIntegrityViolationException("fk_comment_post"))
+                .thenReturn(new int[][]{{1}});
+        offer("1", "deletedPost");
+        offer("2", "post1");
+
+        assertEquals(2, queue.writeNext(1));
+
+        Mockito.verify(jdbcTemplate, Mockito.times(3)).batchUpdate(ArgumentMatchers.anyString(),
+                ArgumentMatchers.anyCollection(), ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+        assertEquals(1, registry.get("blog.comment.queue.written").functionCounter().count());
+        assertEquals(1, registry.get("blog.comment.queue.dropped").functionCounter().count());
+    }
+
+    private boolean offer(String id, String postId) {
+        return queue.offer(id, "body", LocalDateTime.now(), postId, "blogId", "userId");
+    }
+
+    @Test
+    void testStop_whenNeverStarted_shouldReturnWithoutWriter() {
+        assertDoesNotThrow(() -> queue.stop());
+
+        assertFalse(queue.isRunning());
+    }
+}
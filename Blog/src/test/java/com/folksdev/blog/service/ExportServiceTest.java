@@ -0,0 +1,81 @@
+package com.folksdev.blog.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.kotlin.KotlinModule;
+import com.folksdev.blog.TestSupport;
+import com.folksdev.blog.dto.converter.PostDtoConverter;
+import com.folksdev.blog.exception.PostNotFoundException;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.repository.CommentRepository;
+import com.folksdev.blog.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportServiceTest extends TestSupport {
+
+    private PostService postService;
+    private PostRepository postRepository;
+    private CommentRepository commentRepository;
+    private PostDtoConverter postDtoConverter;
+    private EntityManager entityManager;
+
+    private ExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        postService = Mockito.mock(PostService.class);
+        postRepository = Mockito.mock(PostRepository.class);
+        commentRepository = Mockito.mock(CommentRepository.class);
+        postDtoConverter = Mockito.mock(PostDtoConverter.class);
+        entityManager = Mockito.mock(EntityManager.class);
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+
+        exportService = new ExportService(postService,
+                postRepository,
+                commentRepository,
+                postDtoConverter,
+                entityManager,
+                transactionManager,
+                new ObjectMapper().registerModule(new KotlinModule.Builder().build()));
+    }
+
+    @Test
+    void testExportPosts_whenMoreThanOneChunk_shouldWriteEveryLineAndClearAfterEachChunk() throws Exception {
+        int chunkSize = Integer.parseInt(PostRepository.EXPORT_FETCH_SIZE);
+        Post post = generatePost("postId");
+        AtomicBoolean closed = new AtomicBoolean();
+        Mockito.when(postRepository.streamAllWithBlogAndUser())
+                .thenReturn(Stream.generate(() -> post).limit(chunkSize + 1L).onClose(() -> closed.set(true)));
+        Mockito.when(postDtoConverter.convertWithoutComments(post)).thenReturn(generatePostDto("postId"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportPosts().writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(chunkSize + 1, lines.length);
+        assertTrue(lines[chunkSize].startsWith("{\"title\":"));
+        Mockito.verify(entityManager).clear();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testExportCommentsByPostId_whenPostIdNotExists_shouldThrowBeforeReadingComments() {
+        Mockito.when(postService.findPostById("postId")).thenThrow(PostNotFoundException.class);
+
+        assertThrows(PostNotFoundException.class, () -> exportService.exportCommentsByPostId("postId"));
+
+        Mockito.verifyNoInteractions(commentRepository);
+    }
+}
@@ -9,23 +9,27 @@ import com.folksdev.blog.exception.BlogUniqueConstraintsViolatedException;
 import com.folksdev.blog.exception.GroupNotFoundException;
 import com.folksdev.blog.exception.GroupUniqueConstraintsViolatedException;
 import com.folksdev.blog.exception.PostNotFoundException;
+import com.folksdev.blog.exception.UserNotFoundException;
 import com.folksdev.blog.model.Blog;
 import com.folksdev.blog.model.Group;
 import com.folksdev.blog.model.GroupsType;
 import com.folksdev.blog.model.Post;
 import com.folksdev.blog.repository.GroupRepository;
+import com.folksdev.blog.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class GroupServiceTest extends TestSupport {
 
     private GroupRepository groupRepository;
+    private UserRepository userRepository;
     private GroupDtoConverter groupDtoConverter;
 
     private GroupService groupService;
@@ -33,9 +37,10 @@ class GroupServiceTest extends TestSupport {
     @BeforeEach
     void setUp() {
         groupRepository = Mockito.mock(GroupRepository.class);
+        userRepository = Mockito.mock(UserRepository.class);
         groupDtoConverter = Mockito.mock(GroupDtoConverter.class);
 
-        groupService = new GroupService(groupRepository,groupDtoConverter);
+        groupService = new GroupService(groupRepository,userRepository,groupDtoConverter,UniquenessCheck.QUERY);
     }
 
     @Test
@@ -161,6 +166,22 @@ class GroupServiceTest extends TestSupport {
         Mockito.verify(groupDtoConverter).convert(groupRepository.save(group));
     }
 
+    @Test
+    void testCreateGroup_whenUniquenessIsLeftToConstraint_shouldSaveWithoutQueryingName(){
+        groupService = new GroupService(groupRepository,userRepository,groupDtoConverter,UniquenessCheck.CONSTRAINT);
+        CreateGroupRequest createGroupRequest = generateGroupRequest();
+        Group group = generateGroup(null);
+        GroupDto expected = generateGroupDto("groupId");
+
+        Mockito.when(groupDtoConverter.convert(groupRepository.save(group))).thenReturn(expected);
+
+        GroupDto actual = groupService.createGroup(createGroupRequest);
+
+        assertEquals(expected,actual);
+
+        Mockito.verify(groupRepository, Mockito.never()).existsByName(Mockito.anyString());
+    }
+
     @Test
     void testUpdateGroup_whenGroupIdNotExists_shouldThrowGroupNotFoundException(){
         String groupId = "groupId";
@@ -231,4 +252,72 @@ class GroupServiceTest extends TestSupport {
         Mockito.verify(groupDtoConverter).convert(groupList.get(0));
         Mockito.verify(groupDtoConverter).convert(groupList.get(1));
     }
+
+    @Test
+    void testGetGroupsByType_whenCalled_ShouldQueryTypeBitAndReturnListOfGroupDto(){
+        List<Group> groupList = List.of(generateGroup("id1"));
+        List<GroupDto> expectedGroupDtoList = List.of(generateGroupDto("id1"));
+
+        Mockito.when(groupRepository.findAllByTypesMask(1 << GroupsType.GAMING.ordinal())).thenReturn(groupList);
+        Mockito.when(groupDtoConverter.convert(groupList.get(0))).thenReturn(expectedGroupDtoList.get(0));
+
+        List<GroupDto> actualGroupDtoList = groupService.getGroupsByType(GroupsType.GAMING);
+
+        assertEquals(expectedGroupDtoList, actualGroupDtoList);
+
+        Mockito.verify(groupRepository).findAllByTypesMask(128);
+        Mockito.verify(groupDtoConverter).convert(groupList.get(0));
+    }
+
+    @Test
+    void testAddMember_whenUserIdNotExists_shouldThrowUserNotFoundException(){
+        String groupId = "groupId";
+
+        Mockito.when(groupRepository.findById(groupId)).thenReturn(Optional.of(generateGroup(groupId)));
+        Mockito.when(groupRepository.addMember("userId",groupId)).thenReturn(0);
+        Mockito.when(userRepository.existsById("userId")).thenReturn(false);
+
+        assertThrows(UserNotFoundException.class,
+                ()-> groupService.addMember(groupId,"userId"));
+
+        Mockito.verify(groupRepository).addMember("userId",groupId);
+    }
+
+    @Test
+    void testAddMember_whenUserIsAlreadyMember_shouldCheckUserAndNotFail(){
+        String groupId = "groupId";
+
+        Mockito.when(groupRepository.findById(groupId)).thenReturn(Optional.of(generateGroup(groupId)));
+        Mockito.when(groupRepository.addMember("userId",groupId)).thenReturn(0);
+        Mockito.when(userRepository.existsById("userId")).thenReturn(true);
+
+        groupService.addMember(groupId,"userId");
+
+        Mockito.verify(groupRepository).addMember("userId",groupId);
+        Mockito.verify(userRepository).existsById("userId");
+    }
+
+    @Test
+    void testAddMembers_whenUserIdsRepeat_shouldInsertEachOnceAndReturnAddedCount(){
+        String groupId = "groupId";
+
+        Mockito.when(groupRepository.findById(groupId)).thenReturn(Optional.of(generateGroup(groupId)));
+        Mockito.when(groupRepository.addMembers(Set.of("id1","id2"),groupId)).thenReturn(2);
+
+        assertEquals(2, groupService.addMembers(groupId,List.of("id1","id2","id1")).getAdded());
+
+        Mockito.verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testRemoveMember_whenGroupIdNotExists_shouldThrowGroupNotFoundException(){
+        String groupId = "groupId";
+
+        Mockito.when(groupRepository.findById(groupId)).thenReturn(Optional.empty());
+
+        assertThrows(GroupNotFoundException.class,
+                ()-> groupService.removeMember(groupId,"userId"));
+
+        Mockito.verify(groupRepository, Mockito.never()).removeMember(Mockito.anyString(), Mockito.anyString());
+    }
 }
\ No newline at end of file
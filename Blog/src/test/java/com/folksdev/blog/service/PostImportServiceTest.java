@@ -0,0 +1,123 @@
+package com.folksdev.blog.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.kotlin.KotlinModule;
+import com.folksdev.blog.TestSupport;
+import com.folksdev.blog.dto.ImportResultDto;
+import com.folksdev.blog.dto.ImportStatus;
+import com.folksdev.blog.event.BlogChangedEvent;
+import com.folksdev.blog.exception.BlogNotFoundException;
+import com.folksdev.blog.exception.InvalidImportException;
+import com.folksdev.blog.model.Blog;
+import com.folksdev.blog.model.Post;
+import com.folksdev.blog.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostImportServiceTest extends TestSupport {
+
+    private BlogService blogService;
+    private PostRepository postRepository;
+    private ApplicationEventPublisher eventPublisher;
+
+    private PostImportService postImportService;
+
+    @BeforeEach
+    void setUp() {
+        blogService = Mockito.mock(BlogService.class);
+        postRepository = Mockito.mock(PostRepository.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+        Mockito.when(postRepository.save(Mockito.any(Post.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        EntityManager entityManager = Mockito.mock(EntityManager.class);
+        Mockito.when(entityManager.getReference(Blog.class, "blogId")).thenReturn(generateBlog("blogId"));
+
+        postImportService = new PostImportService(blogService,
+                postRepository,
+                entityManager,
+                transactionManager,
+                new ObjectMapper().registerModule(new KotlinModule.Builder().build()),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                eventPublisher,
+                2);
+    }
+
+    @Test
+    void testImportPosts_whenBlogIdNotExists_shouldThrowBlogNotFoundException() {
+        Mockito.when(blogService.findBlogById("blogId")).thenThrow(BlogNotFoundException.class);
+
+        assertThrows(BlogNotFoundException.class,
+                () -> postImportService.importPosts("blogId", json("[]")));
+
+        Mockito.verifyNoInteractions(postRepository);
+    }
+
+    @Test
+    void testImportPosts_whenPostsSpanSeveralChunks_shouldSaveValidPostsChunkByChunk() {
+        List<ImportResultDto> results = postImportService.importPosts("blogId", json("["
+                + "{\"title\":\"t0\",\"content\":\"c\"},"
+                + "{\"title\":\"\",\"content\":\"c\"},"
+                + "{\"title\":\"t2\",\"content\":\"c\"},"
+                + "{\"title\":\"t3\",\"content\":\"c\"},"
+                + "{\"content\":\"c\"},"
+                + "{\"title\":\"t5\",\"content\":\"c\"}"
+                + "]"));
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5),
+                results.stream().map(ImportResultDto::getIndex).collect(Collectors.toList()));
+        assertEquals(List.of(ImportStatus.CREATED, ImportStatus.INVALID, ImportStatus.CREATED,
+                        ImportStatus.CREATED, ImportStatus.INVALID, ImportStatus.CREATED),
+                results.stream().map(ImportResultDto::getStatus).collect(Collectors.toList()));
+        assertTrue(results.get(1).getErrors().containsKey("title"));
+
+        Mockito.verify(postRepository, Mockito.times(4)).save(Mockito.any(Post.class));
+        Mockito.verify(blogService, Mockito.times(2)).incrementVersion("blogId");
+        Mockito.verify(eventPublisher, Mockito.times(2)).publishEvent(new BlogChangedEvent("blogId"));
+    }
+
+    @Test
+    void testImportPosts_whenChunkIsRefused_shouldMarkItsPostsFailedAndContinue() {
+        Mockito.when(postRepository.save(Mockito.any(Post.class)))
+                .thenThrow(new DataIntegrityViolationException("refused"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<ImportResultDto> results = postImportService.importPosts("blogId", json("["
+                + "{\"title\":\"t0\",\"content\":\"c\"},"
+                + "{\"title\":\"t1\",\"content\":\"c\"},"
+                + "{\"title\":\"t2\",\"content\":\"c\"}"
+                + "]"));
+
+        assertEquals(List.of(ImportStatus.FAILED, ImportStatus.FAILED, ImportStatus.CREATED),
+                results.stream().map(ImportResultDto::getStatus).collect(Collectors.toList()));
+        assertEquals("refused", results.get(0).getErrors().get("post"));
+    }
+
+    @Test
+    void testImportPosts_whenBodyIsNotAnArray_shouldThrowInvalidImportException() {
+        assertThrows(InvalidImportException.class,
+                () -> postImportService.importPosts("blogId", json("{\"title\":\"t0\"}")));
+
+        Mockito.verifyNoInteractions(postRepository);
+    }
+
+    private InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,19 +1,30 @@
 package com.folksdev.blog.service;
 
 import com.folksdev.blog.TestSupport;
+import com.folksdev.blog.dto.CommentPreview;
+import com.folksdev.blog.dto.CursorPageDto;
 import com.folksdev.blog.dto.PostDto;
+import com.folksdev.blog.dto.PurgeJobDto;
 import com.folksdev.blog.dto.converter.PostDtoConverter;
 import com.folksdev.blog.dto.requests.CreatePostRequest;
+import com.folksdev.blog.event.BlogChangedEvent;
 import com.folksdev.blog.exception.BlogNotFoundException;
+import com.folksdev.blog.exception.InvalidCursorException;
 import com.folksdev.blog.exception.PostNotFoundException;
 import com.folksdev.blog.model.*;
 import com.folksdev.blog.repository.PostRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,6 +33,10 @@ class PostServiceTest extends TestSupport {
     private BlogService blogService;
     private PostRepository postRepository;
     private PostDtoConverter postDtoConverter;
+    private CommentPreviewLoader commentPreviewLoader;
+    private ApplicationEventPublisher eventPublisher;
+    private PurgeService purgeService;
+    private ResourceVersionService resourceVersionService;
 
     private PostService postService;
 
@@ -31,8 +46,18 @@ class PostServiceTest extends TestSupport {
         blogService = Mockito.mock(BlogService.class);
         postRepository = Mockito.mock(PostRepository.class);
         postDtoConverter = Mockito.mock(PostDtoConverter.class);
-
-        postService = new PostService(blogService,postRepository,postDtoConverter);
+        commentPreviewLoader = Mockito.mock(CommentPreviewLoader.class);
+        Mockito.when(commentPreviewLoader.load(Mockito.anyString())).thenReturn(CommentPreview.NONE);
+        Mockito.when(commentPreviewLoader.load(Mockito.anyCollection())).thenAnswer(invocation -> {
+            Collection<String> postIds = invocation.getArgument(0);
+            return postIds.stream().collect(Collectors.toMap(Function.identity(), id -> CommentPreview.NONE));
+        });
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        purgeService = Mockito.mock(PurgeService.class);
+        resourceVersionService = Mockito.mock(ResourceVersionService.class);
+
+        postService = new PostService(blogService,postRepository,postDtoConverter,commentPreviewLoader,eventPublisher,
+                purgeService,resourceVersionService);
     }
 
     @Test
@@ -63,11 +88,11 @@ class PostServiceTest extends TestSupport {
     void testGetPostById_whenPostIdNotExists_ShouldThrowPostNotFoundException(){
         String postId = "postId";
 
-        Mockito.when(postRepository.findById(postId)).thenThrow(PostNotFoundException.class);
+        Mockito.when(postRepository.findWithContentById(postId)).thenReturn(Optional.empty());
         assertThrows(PostNotFoundException.class,
                 ()-> postService.getPostById(postId));
 
-        Mockito.verify(postRepository).findById(postId);
+        Mockito.verify(postRepository).findWithContentById(postId);
         Mockito.verifyNoInteractions(postDtoConverter);
     }
 
@@ -76,15 +101,15 @@ class PostServiceTest extends TestSupport {
         String postId = "postId";
         Post post = generatePost(postId);
         PostDto expectedPostDto = generatePostDto(postId);
-        Mockito.when(postRepository.findById(postId)).thenReturn(Optional.of(post));
-        Mockito.when(postDtoConverter.convert(post)).thenReturn(expectedPostDto);
+        Mockito.when(postRepository.findWithContentById(postId)).thenReturn(Optional.of(post));
+        Mockito.when(postDtoConverter.convert(post, CommentPreview.NONE)).thenReturn(expectedPostDto);
 
         PostDto actualPostDto = postService.getPostById(postId);
 
         assertEquals(expectedPostDto,actualPostDto);
 
-        Mockito.verify(postRepository).findById(postId);
-        Mockito.verify(postDtoConverter).convert(post);
+        Mockito.verify(postRepository).findWithContentById(postId);
+        Mockito.verify(postDtoConverter).convert(post, CommentPreview.NONE);
     }
 
     @Test
@@ -99,19 +124,23 @@ class PostServiceTest extends TestSupport {
     }
 
     @Test
-    void testDeletePost_whenPostIdExists_ShouldReturnConfirmationString(){
+    void testDeletePost_whenPostIdExists_ShouldMarkPostAndSchedulePurge(){
         String postId = "postId";
         Post post = generatePost(postId);
-        String expected = "Post successfully deleted from database :" + postId;
+        PurgeJobDto expected = new PurgeJobDto("jobId", PurgeTarget.POST, postId, PurgeStatus.PENDING, 0, LocalDateTime.now(), null);
 
         Mockito.when(postRepository.findById(postId)).thenReturn(Optional.of(post));
+        Mockito.when(purgeService.schedulePurge(PurgeTarget.POST, postId)).thenReturn(expected);
 
-        String actual = postService.deletePost(postId);
+        PurgeJobDto actual = postService.deletePost(postId);
 
         assertEquals(expected, actual);
+        assertNotNull(post.getDeletedAt());
 
         Mockito.verify(postRepository).findById(postId);
-        Mockito.verify(postRepository).deleteById(postId);
+        Mockito.verify(postRepository, Mockito.never()).deleteById(postId);
+        Mockito.verify(blogService).incrementVersion("blogId");
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent("blogId"));
     }
 
     @Test
@@ -120,7 +149,7 @@ class PostServiceTest extends TestSupport {
 
         Mockito.when(blogService.findBlogById(blogId)).thenThrow(BlogNotFoundException.class);
         assertThrows(BlogNotFoundException.class,
-                ()-> postService.getPostsByBlogId(blogId));
+                ()-> postService.getPostsByBlogId(blogId, null, 20));
 
         Mockito.verify(blogService).findBlogById(blogId);
         Mockito.verifyNoInteractions(postRepository);
@@ -128,7 +157,7 @@ class PostServiceTest extends TestSupport {
     }
 
     @Test
-    void testGetPostsByBlogId_whenBlogIdExists_ShouldReturnListOfPostDto(){
+    void testGetPostsByBlogId_whenBlogIdExists_ShouldReturnPageOfPostDto(){
         String blogId = "blogId";
         Blog blog = generateBlog(blogId);
         List<Post> postList = List.of(
@@ -138,39 +167,111 @@ class PostServiceTest extends TestSupport {
         List<PostDto> expectedPostDtoList = generatePostDtoList();
 
         Mockito.when(blogService.findBlogById(blogId)).thenReturn(blog);
-        Mockito.when(postRepository.findAllByBlogId(blogId)).thenReturn(postList);
-        Mockito.when(postDtoConverter.convert(postList.get(0))).thenReturn(expectedPostDtoList.get(0));
-        Mockito.when(postDtoConverter.convert(postList.get(1))).thenReturn(expectedPostDtoList.get(1));
+        Mockito.when(postRepository.findFirstPageByBlogId(blogId, PageRequest.of(0, 21))).thenReturn(postList);
+        Mockito.when(postDtoConverter.convert(postList.get(0), CommentPreview.NONE)).thenReturn(expectedPostDtoList.get(0));
+        Mockito.when(postDtoConverter.convert(postList.get(1), CommentPreview.NONE)).thenReturn(expectedPostDtoList.get(1));
 
-        List<PostDto> actualPostDtoList = postService.getPostsByBlogId(blogId);
+        CursorPageDto<PostDto> actualPage = postService.getPostsByBlogId(blogId, null, 20);
 
-        assertEquals(expectedPostDtoList, actualPostDtoList);
+        assertEquals(expectedPostDtoList, actualPage.getItems());
+        assertNull(actualPage.getNextCursor());
 
         Mockito.verify(blogService).findBlogById(blogId);
-        Mockito.verify(postRepository).findAllByBlogId(blogId);
-        Mockito.verify(postDtoConverter).convert(postList.get(0));
-        Mockito.verify(postDtoConverter).convert(postList.get(1));
+        Mockito.verify(postRepository).findFirstPageByBlogId(blogId, PageRequest.of(0, 21));
+        Mockito.verify(postDtoConverter).convert(postList.get(0), CommentPreview.NONE);
+        Mockito.verify(postDtoConverter).convert(postList.get(1), CommentPreview.NONE);
+    }
+
+    @Test
+    void testGetPostsByBlogId_whenCursorIsGiven_ShouldReturnPostsAfterCursor(){
+        String blogId = "blogId";
+        Blog blog = generateBlog(blogId);
+        Post post = generatePost("id3");
+        String cursor = new KeysetCursor(generateLocalDateTime(), "id2").encode();
+        PostDto expectedPostDto = generatePostDto("id3");
+
+        Mockito.when(blogService.findBlogById(blogId)).thenReturn(blog);
+        Mockito.when(postRepository.findPageByBlogIdAfter(blogId, generateLocalDateTime(), "id2", PageRequest.of(0, 21)))
+                .thenReturn(List.of(post));
+        Mockito.when(postDtoConverter.convert(post, CommentPreview.NONE)).thenReturn(expectedPostDto);
+
+        CursorPageDto<PostDto> actualPage = postService.getPostsByBlogId(blogId, cursor, 20);
+
+        assertEquals(List.of(expectedPostDto), actualPage.getItems());
+        assertNull(actualPage.getNextCursor());
+
+        Mockito.verify(postRepository).findPageByBlogIdAfter(blogId, generateLocalDateTime(), "id2", PageRequest.of(0, 21));
+    }
+
+    @Test
+    void testGetPosts_whenCalled_ShouldReturnPageOfPostDto(){
+        List<Post> postList = List.of(
+                generatePost("id1"),
+                generatePost("id2")
+        );
+        List<PostDto> expectedPostDtoList = generatePostDtoList();
+
+        Mockito.when(postRepository.findFirstPage(PageRequest.of(0, 21))).thenReturn(postList);
+        Mockito.when(postDtoConverter.convert(postList.get(0), CommentPreview.NONE)).thenReturn(expectedPostDtoList.get(0));
+        Mockito.when(postDtoConverter.convert(postList.get(1), CommentPreview.NONE)).thenReturn(expectedPostDtoList.get(1));
+
+        CursorPageDto<PostDto> actualPage = postService.getPosts(null, 20);
+
+        assertEquals(expectedPostDtoList, actualPage.getItems());
+        assertNull(actualPage.getNextCursor());
+
+        Mockito.verify(postRepository).findFirstPage(PageRequest.of(0, 21));
+        Mockito.verify(commentPreviewLoader).load(List.of("id1", "id2"));
+        Mockito.verify(postDtoConverter).convert(postList.get(0), CommentPreview.NONE);
+        Mockito.verify(postDtoConverter).convert(postList.get(1), CommentPreview.NONE);
     }
 
     @Test
-    void testGetPosts_whenCalled_ShouldReturnListOfPostDto(){
+    void testGetPosts_whenMoreRowsThanPageSize_ShouldReturnNextCursorOfLastPost(){
         List<Post> postList = List.of(
                 generatePost("id1"),
                 generatePost("id2")
         );
         List<PostDto> expectedPostDtoList = generatePostDtoList();
 
-        Mockito.when(postRepository.findAll()).thenReturn(postList);
-        Mockito.when(postDtoConverter.convert(postList.get(0))).thenReturn(expectedPostDtoList.get(0));
-        Mockito.when(postDtoConverter.convert(postList.get(1))).thenReturn(expectedPostDtoList.get(1));
+        Mockito.when(postRepository.findFirstPage(PageRequest.of(0, 2))).thenReturn(postList);
+        Mockito.when(postDtoConverter.convert(postList.get(0), CommentPreview.NONE)).thenReturn(expectedPostDtoList.get(0));
+
+        CursorPageDto<PostDto> actualPage = postService.getPosts(null, 1);
+
+        assertEquals(List.of(expectedPostDtoList.get(0)), actualPage.getItems());
+        assertEquals(new KeysetCursor(postList.get(0).getDate(), "id1").encode(), actualPage.getNextCursor());
+
+        Mockito.verify(postRepository).findFirstPage(PageRequest.of(0, 2));
+        Mockito.verify(postDtoConverter).convert(postList.get(0), CommentPreview.NONE);
+        Mockito.verifyNoMoreInteractions(postDtoConverter);
+    }
+
+    @Test
+    void testGetPostsByTopic_whenCalledWithoutCursor_ShouldQueryTopicBitAndReturnFirstPage(){
+        List<Post> postList = List.of(generatePost("id1"));
+        List<PostDto> expectedPostDtoList = generatePostDtoList();
+
+        Mockito.when(postRepository.findFirstPageByTopicsMask(1 << TopicsType.TECH.ordinal(), PageRequest.of(0, 21)))
+                .thenReturn(postList);
+        Mockito.when(postDtoConverter.convert(postList.get(0), CommentPreview.NONE)).thenReturn(expectedPostDtoList.get(0));
 
-        List<PostDto> actualPostDtoList = postService.getPosts();
+        CursorPageDto<PostDto> actualPage = postService.getPostsByTopic(TopicsType.TECH, null, 20);
 
-        assertEquals(expectedPostDtoList, actualPostDtoList);
+        assertEquals(List.of(expectedPostDtoList.get(0)), actualPage.getItems());
+        assertNull(actualPage.getNextCursor());
 
-        Mockito.verify(postRepository).findAll();
-        Mockito.verify(postDtoConverter).convert(postList.get(0));
-        Mockito.verify(postDtoConverter).convert(postList.get(1));
+        Mockito.verify(postRepository).findFirstPageByTopicsMask(128, PageRequest.of(0, 21));
+        Mockito.verify(postDtoConverter).convert(postList.get(0), CommentPreview.NONE);
+    }
+
+    @Test
+    void testGetPosts_whenCursorIsMalformed_ShouldThrowInvalidCursorException(){
+        assertThrows(InvalidCursorException.class,
+                ()-> postService.getPosts("not-a-cursor", 20));
+
+        Mockito.verifyNoInteractions(postRepository);
+        Mockito.verifyNoInteractions(postDtoConverter);
     }
 
     @Test
@@ -206,26 +307,28 @@ class PostServiceTest extends TestSupport {
         Post post = generatePost(null);
 
         Mockito.when(blogService.findBlogById(blogId)).thenReturn(blog);
-        Mockito.when(postDtoConverter.convert(postRepository.save(post))).thenReturn(expected);
+        Mockito.when(postDtoConverter.convert(postRepository.save(post), CommentPreview.NONE)).thenReturn(expected);
 
         PostDto actual = postService.createPostByBlogId(blogId, createPostRequest);
         assertEquals(expected, actual);
 
         Mockito.verify(blogService).findBlogById(blogId);
         Mockito.verify(postRepository).save(post);
-        Mockito.verify(postDtoConverter).convert(postRepository.save(post));
+        Mockito.verify(postDtoConverter).convert(postRepository.save(post), CommentPreview.NONE);
+        Mockito.verify(blogService).incrementVersion(blogId);
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent(blogId));
     }
 
     @Test
     void testUpdatePostById_whenPostIdNotExists_shouldThrowPostNotFoundException() {
         String postId = "postId";
         CreatePostRequest createPostRequest = generatePostRequest();
-        Mockito.when(postRepository.findById(postId)).thenThrow(PostNotFoundException.class);
+        Mockito.when(postRepository.findWithContentById(postId)).thenReturn(Optional.empty());
 
         assertThrows(PostNotFoundException.class,
                 ()-> postService.updatePostById(postId,createPostRequest));
 
-        Mockito.verify(postRepository).findById(postId);
+        Mockito.verify(postRepository).findWithContentById(postId);
         Mockito.verifyNoInteractions(postDtoConverter);
     }
 
@@ -245,15 +348,19 @@ class PostServiceTest extends TestSupport {
 
         Post post = generatePost("postId");
 
-        Mockito.when(postRepository.findById(postId)).thenReturn(Optional.of(post));
-        Mockito.when(postDtoConverter.convert(postRepository.save(post))).thenReturn(expected);
+        Mockito.when(postRepository.findWithContentById(postId)).thenReturn(Optional.of(post));
+        Mockito.when(postRepository.save(Mockito.any(Post.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(postDtoConverter.convert(Mockito.any(Post.class), Mockito.eq(CommentPreview.NONE))).thenReturn(expected);
 
         PostDto actual = postService.updatePostById(postId, createPostRequest);
         assertEquals(expected, actual);
 
-        Mockito.verify(postRepository).findById(postId);
-        Mockito.verify(postRepository).save(post);
-        Mockito.verify(postDtoConverter).convert(postRepository.save(post));
+        Mockito.verify(postRepository).findWithContentById(postId);
+        Mockito.verify(postRepository).save(Mockito.any(Post.class));
+        Mockito.verify(commentPreviewLoader).load("postId");
+        Mockito.verify(postDtoConverter).convert(Mockito.any(Post.class), Mockito.eq(CommentPreview.NONE));
+        Mockito.verify(blogService).incrementVersion("blogId");
+        Mockito.verify(eventPublisher).publishEvent(new BlogChangedEvent("blogId"));
     }
 
 
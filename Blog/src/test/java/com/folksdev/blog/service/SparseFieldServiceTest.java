@@ -0,0 +1,94 @@
+package com.folksdev.blog.service;
+
+import com.folksdev.blog.TestSupport;
+import com.folksdev.blog.dto.CursorPageDto;
+import com.folksdev.blog.exception.BlogNotFoundException;
+import com.folksdev.blog.exception.InvalidFieldsException;
+import com.folksdev.blog.repository.BlogRepository;
+import com.folksdev.blog.repository.SparseFieldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.persistence.Tuple;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseFieldServiceTest extends TestSupport {
+
+    private SparseFieldRepository sparseFieldRepository;
+    private CommentPreviewLoader commentPreviewLoader;
+    private BlogRepository blogRepository;
+
+    private SparseFieldService sparseFieldService;
+
+    @BeforeEach
+    void setUp() {
+        sparseFieldRepository = Mockito.mock(SparseFieldRepository.class);
+        commentPreviewLoader = Mockito.mock(CommentPreviewLoader.class);
+        blogRepository = Mockito.mock(BlogRepository.class);
+
+        sparseFieldService = new SparseFieldService(sparseFieldRepository, commentPreviewLoader, blogRepository);
+    }
+
+    @Test
+    void testParse_whenFieldsRepeatOrHaveBlanks_shouldKeepEachOnceInGivenOrder() {
+        assertEquals(List.of("date", "title"), SparseFieldService.parse(" date,title,,date ", SparseFieldRepository.POST));
+    }
+
+    @Test
+    void testParse_whenFieldIsUnknown_shouldThrowInvalidFieldsException() {
+        assertThrows(InvalidFieldsException.class, () -> SparseFieldService.parse("title,secret", SparseFieldRepository.POST));
+        assertThrows(InvalidFieldsException.class, () -> SparseFieldService.parse("id", SparseFieldRepository.POST));
+        assertThrows(InvalidFieldsException.class, () -> SparseFieldService.parse(",", SparseFieldRepository.POST));
+    }
+
+    @Test
+    void testGetPosts_whenCommentsAreNotAsked_shouldNotLoadPreviews() {
+        Tuple row = Mockito.mock(Tuple.class);
+        Mockito.when(row.get("id", String.class)).thenReturn("postId");
+        Mockito.when(row.get("title")).thenReturn("title");
+        Mockito.when(sparseFieldRepository.findAll(ArgumentMatchers.eq(SparseFieldRepository.POST),
+                        ArgumentMatchers.anyCollection(), ArgumentMatchers.any(),
+                        ArgumentMatchers.eq(SparseFieldRepository.POST_PAGE_ORDER), ArgumentMatchers.eq(3)))
+                .thenReturn(List.of(row));
+
+        CursorPageDto<Map<String, Object>> page = sparseFieldService.getPosts("title", null, 2);
+
+        assertEquals(List.of(Map.of("title", "title")), page.getItems());
+        assertNull(page.getNextCursor());
+        Mockito.verifyNoInteractions(commentPreviewLoader);
+    }
+
+    @Test
+    void testGetPostsByBlogId_whenMorePostsThanPageSize_shouldContinueAfterLastRow() {
+        LocalDateTime date = LocalDateTime.of(2021, 10, 1, 12, 0);
+        Tuple first = Mockito.mock(Tuple.class);
+        Mockito.when(first.get("date", LocalDateTime.class)).thenReturn(date);
+        Mockito.when(first.get("id", String.class)).thenReturn("postId");
+        Mockito.when(blogRepository.existsById("blogId")).thenReturn(true);
+        Mockito.when(sparseFieldRepository.findAll(ArgumentMatchers.eq(SparseFieldRepository.POST),
+                        ArgumentMatchers.anyCollection(), ArgumentMatchers.any(),
+                        ArgumentMatchers.eq(SparseFieldRepository.POST_PAGE_ORDER), ArgumentMatchers.eq(2)))
+                .thenReturn(List.of(first, Mockito.mock(Tuple.class)));
+
+        CursorPageDto<Map<String, Object>> page = sparseFieldService.getPostsByBlogId("blogId", "title", null, 1);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(new KeysetCursor(date, "postId").encode(), page.getNextCursor());
+    }
+
+    @Test
+    void testGetPostsByBlogId_whenBlogIdNotExists_shouldThrowBeforeQueryingPosts() {
+        Mockito.when(blogRepository.existsById("blogId")).thenReturn(false);
+
+        assertThrows(BlogNotFoundException.class,
+                () -> sparseFieldService.getPostsByBlogId("blogId", "title", null, 20));
+
+        Mockito.verifyNoInteractions(sparseFieldRepository);
+    }
+}
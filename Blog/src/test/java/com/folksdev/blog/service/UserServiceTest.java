@@ -1,20 +1,30 @@
 package com.folksdev.blog.service;
 
 import com.folksdev.blog.TestSupport;
+import com.folksdev.blog.dto.PurgeJobDto;
 import com.folksdev.blog.dto.UserDto;
+import com.folksdev.blog.dto.Versioned;
 import com.folksdev.blog.dto.converter.UserDtoConverter;
 import com.folksdev.blog.dto.requests.CreateUserRequest;
+import com.folksdev.blog.dto.requests.PatchUserRequest;
 import com.folksdev.blog.dto.requests.UpdateUserRequest;
+import com.folksdev.blog.event.UserChangedEvent;
 import com.folksdev.blog.exception.GroupNotFoundException;
 import com.folksdev.blog.exception.UserNotFoundException;
 import com.folksdev.blog.exception.UserUniqueConstraintsViolatedException;
 import com.folksdev.blog.model.Group;
+import com.folksdev.blog.model.PurgeStatus;
+import com.folksdev.blog.model.PurgeTarget;
 import com.folksdev.blog.model.User;
+import com.folksdev.blog.repository.BlogRepository;
+import com.folksdev.blog.repository.PostRepository;
 import com.folksdev.blog.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +36,11 @@ class UserServiceTest extends TestSupport {
     private UserRepository userRepository;
     private UserDtoConverter userDtoConverter;
     private GroupService groupService;
+    private BlogRepository blogRepository;
+    private PostRepository postRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private UserUniquenessFilter userUniquenessFilter;
+    private PurgeService purgeService;
 
     private UserService userService;
     @BeforeEach
@@ -33,8 +48,15 @@ class UserServiceTest extends TestSupport {
         userRepository = Mockito.mock(UserRepository.class);
         userDtoConverter = Mockito.mock(UserDtoConverter.class);
         groupService = Mockito.mock(GroupService.class);
-
-        userService = new UserService(userRepository,groupService,userDtoConverter);
+        blogRepository = Mockito.mock(BlogRepository.class);
+        postRepository = Mockito.mock(PostRepository.class);
+        eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        userUniquenessFilter = Mockito.mock(UserUniquenessFilter.class);
+        purgeService = Mockito.mock(PurgeService.class);
+        Mockito.when(userUniquenessFilter.mightBeTaken(Mockito.anyString(), Mockito.anyString())).thenReturn(true);
+
+        userService = new UserService(userRepository,groupService,userDtoConverter,blogRepository,postRepository,eventPublisher,
+                userUniquenessFilter,purgeService,UniquenessCheck.QUERY);
     }
 
     @Test
@@ -86,10 +108,47 @@ class UserServiceTest extends TestSupport {
         assertEquals(expected,actual);
 
         Mockito.verify(userRepository).existsByUsernameOrEmail(createUserRequest.getUsername(), createUserRequest.getEmail());
+        Mockito.verify(userUniquenessFilter).recordQueryResult(false);
         Mockito.verify(userRepository).save(user);
         Mockito.verify(userDtoConverter).convert(userRepository.save(user));
     }
 
+    @Test
+    void testCreateUser_whenFilterRulesOutUsernameAndEmail_shouldNotQueryForExistingUsers(){
+        CreateUserRequest createUserRequest = generateCreateUserRequest();
+        User user = generateUser(null);
+        UserDto expected = generateUserDto("userId");
+
+        Mockito.when(userUniquenessFilter.mightBeTaken(createUserRequest.getUsername(), createUserRequest.getEmail()))
+                .thenReturn(false);
+        Mockito.when(userDtoConverter.convert(userRepository.save(user))).thenReturn(expected);
+
+        UserDto actual = userService.createUser(createUserRequest);
+
+        assertEquals(expected,actual);
+
+        Mockito.verify(userRepository, Mockito.never()).existsByUsernameOrEmail(Mockito.anyString(), Mockito.anyString());
+        Mockito.verify(userUniquenessFilter, Mockito.never()).recordQueryResult(Mockito.anyBoolean());
+    }
+
+    @Test
+    void testCreateUser_whenUniquenessIsLeftToConstraint_shouldSaveWithoutQueryingOrFiltering(){
+        // there is no filter bean in this mode
+        userService = new UserService(userRepository,groupService,userDtoConverter,blogRepository,postRepository,eventPublisher,
+                null,purgeService,UniquenessCheck.CONSTRAINT);
+        CreateUserRequest createUserRequest = generateCreateUserRequest();
+        User user = generateUser(null);
+        UserDto expected = generateUserDto("userId");
+
+        Mockito.when(userDtoConverter.convert(userRepository.save(user))).thenReturn(expected);
+
+        UserDto actual = userService.createUser(createUserRequest);
+
+        assertEquals(expected,actual);
+
+        Mockito.verify(userRepository, Mockito.never()).existsByUsernameOrEmail(Mockito.anyString(), Mockito.anyString());
+    }
+
     @Test
     void testUpdateUser_whenUserIdNotExists_shouldThrowUserNotFoundException(){
         String userId = "userId";
@@ -141,6 +200,9 @@ class UserServiceTest extends TestSupport {
         Mockito.verify(userRepository).findById(userId);
         Mockito.verify(userRepository).existsByUsernameOrEmail(updateUserRequest.getUsername(), updateUserRequest.getEmail());
         Mockito.verify(userDtoConverter).convert(userRepository.save(user));
+        Mockito.verify(blogRepository).incrementVersionsShowingUser(userId);
+        Mockito.verify(postRepository).incrementVersionsCommentedByUser(userId);
+        Mockito.verify(eventPublisher).publishEvent(new UserChangedEvent(userId));
     }
 
     @Test
@@ -207,19 +269,34 @@ class UserServiceTest extends TestSupport {
     }
 
     @Test
-    void testDeleteUser_whenUserIdExists_shouldReturnConfirmationString(){
+    void testDeleteUser_whenUserIdExists_shouldMarkUserAndSchedulePurge(){
         String userId = "userId";
         User user = generateUser(userId);
-        String expected = "User successfully deleted from database with id: " + userId;
+        PurgeJobDto expected = new PurgeJobDto("jobId", PurgeTarget.USER, userId, PurgeStatus.PENDING, 0, LocalDateTime.now(), null);
 
         Mockito.when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        Mockito.when(purgeService.schedulePurge(PurgeTarget.USER, userId)).thenReturn(expected);
 
-        String actual = userService.deleteUser(userId);
+        PurgeJobDto actual = userService.deleteUser(userId);
 
         assertEquals(expected, actual);
+        assertNotNull(user.getDeletedAt());
 
-        Mockito.verify(userRepository).findById(userId);
-        Mockito.verify(userRepository).deleteById(userId);
+        Mockito.verify(userRepository, Mockito.never()).deleteById(userId);
+        Mockito.verify(blogRepository).incrementVersionsShowingUser(userId);
+        Mockito.verify(eventPublisher).publishEvent(new UserChangedEvent(userId));
+    }
+
+    @Test
+    void testFindUserById_whenCachedUserIsMarkedDeleted_shouldThrowUserNotFoundException(){
+        String userId = "userId";
+        User user = generateUser(userId);
+        user.setDeletedAt(LocalDateTime.now());
+
+        Mockito.when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+        assertThrows(UserNotFoundException.class,
+                ()-> userService.findUserById(userId));
     }
 
     @Test
@@ -261,7 +338,7 @@ class UserServiceTest extends TestSupport {
 
         Mockito.when(groupService.findGroupById(groupId)).thenReturn(group);
         Mockito.when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        Mockito.when(userDtoConverter.convert(userRepository.save(user))).thenReturn(expected);
+        Mockito.when(userDtoConverter.convert(user)).thenReturn(expected);
 
         UserDto actual = userService.updateUserAddGroup(userId,groupId);
 
@@ -269,6 +346,48 @@ class UserServiceTest extends TestSupport {
 
         Mockito.verify(groupService).findGroupById(groupId);
         Mockito.verify(userRepository).findById(userId);
-        Mockito.verify(userDtoConverter).convert(userRepository.save(user));
+        Mockito.verify(groupService).addMember(groupId,userId);
+        Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    void testPatchUser_whenOnlyEmailIsGivenAndFree_shouldNotCountOwnUsernameAsTaken(){
+        String userId = "userId";
+        User generated = generateUser(userId);
+        User user = new User(generated.getId(), generated.getName(), generated.getSurname(), generated.getUsername(),
+                generated.getEmail(), generated.getDateOfBirth(), generated.getGender(), generated.getGroups(),
+                generated.getBlog(), generated.getComments(), 0L);
+        UserDto expected = generateUserDto(userId);
+
+        Mockito.when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        Mockito.when(userRepository.existsOtherByUsernameOrEmail(user.getUsername(), "new@email.com", userId))
+                .thenReturn(false);
+        Mockito.when(userDtoConverter.convert(user)).thenReturn(expected);
+
+        Versioned<UserDto> actual = userService.patchUser(userId, new PatchUserRequest(null, null, null,
+                "new@email.com", null, null), null);
+
+        assertEquals(expected, actual.getBody());
+        assertEquals("new@email.com", user.getEmail());
+        Mockito.verify(userRepository).flush();
+        Mockito.verify(userRepository, Mockito.never()).existsByUsernameOrEmail(Mockito.any(), Mockito.any());
+        Mockito.verify(eventPublisher).publishEvent(new UserChangedEvent(userId));
+    }
+
+    @Test
+    void testPatchUser_whenEmailBelongsToOtherUser_shouldThrowUserUniqueConstraintsViolatedException(){
+        String userId = "userId";
+        User user = generateUser(userId);
+
+        Mockito.when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        Mockito.when(userRepository.existsOtherByUsernameOrEmail(user.getUsername(), "taken@email.com", userId))
+                .thenReturn(true);
+
+        assertThrows(UserUniqueConstraintsViolatedException.class,
+                ()-> userService.patchUser(userId, new PatchUserRequest(null, null, null,
+                        "taken@email.com", null, null), null));
+
+        Mockito.verify(userRepository, Mockito.never()).flush();
+        Mockito.verifyNoInteractions(userDtoConverter);
     }
 }
\ No newline at end of file
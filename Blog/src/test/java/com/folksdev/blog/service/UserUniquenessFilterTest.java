@@ -0,0 +1,60 @@
+package com.folksdev.blog.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserUniquenessFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserUniquenessFilter userUniquenessFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userUniquenessFilter = new UserUniquenessFilter(Mockito.mock(DataSource.class), 1000, 0.01);
+        userUniquenessFilter.bindTo(meterRegistry);
+    }
+
+    @Test
+    void testMightBeTaken_whenNeitherValueWasAdded_shouldReturnFalse() {
+        userUniquenessFilter.add("username", "email@email.com");
+
+        assertFalse(userUniquenessFilter.mightBeTaken("username2", "email2@email.com"));
+        assertEquals(1, meterRegistry.get("blog.user.uniqueness.filter.skipped").functionCounter().count());
+    }
+
+    @Test
+    void testMightBeTaken_whenUsernameOrEmailWasAdded_shouldReturnTrue() {
+        userUniquenessFilter.add("username", "email@email.com");
+
+        assertTrue(userUniquenessFilter.mightBeTaken("username", "email2@email.com"));
+        assertTrue(userUniquenessFilter.mightBeTaken("username2", "email@email.com"));
+    }
+
+    @Test
+    void testMightBeTaken_whenValueWasAddedAsTheOtherField_shouldReturnFalse() {
+        userUniquenessFilter.add("same", "other");
+
+        assertFalse(userUniquenessFilter.mightBeTaken("other", "same"));
+    }
+
+    @Test
+    void testRecordQueryResult_whenDatabaseDeniesPositives_shouldReportFalsePositiveRate() {
+        userUniquenessFilter.add("username", "email@email.com");
+
+        userUniquenessFilter.mightBeTaken("username2", "email2@email.com");
+        userUniquenessFilter.mightBeTaken("username3", "email3@email.com");
+        userUniquenessFilter.mightBeTaken("username4", "email4@email.com");
+        userUniquenessFilter.recordQueryResult(false);
+        userUniquenessFilter.recordQueryResult(true);
+
+        assertEquals(1, meterRegistry.get("blog.user.uniqueness.filter.false.positives").functionCounter().count());
+        assertEquals(0.25, meterRegistry.get("blog.user.uniqueness.filter.false.positive.rate").gauge().value());
+    }
+}